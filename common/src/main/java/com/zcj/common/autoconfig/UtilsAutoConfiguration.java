@@ -2,9 +2,13 @@ package com.zcj.common.autoconfig;
 
 import com.zcj.common.config.JWTProperties;
 import com.zcj.common.config.SnowflakeProperties;
+import com.zcj.common.utils.GroupMembershipCache;
 import com.zcj.common.utils.JWTUtil;
+import com.zcj.common.utils.ResponseCacheInvalidator;
 import com.zcj.common.utils.SnowflakeIdGenerator;
+import com.zcj.common.utils.SyncNotifier;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -14,12 +18,14 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 @Configuration
 @Slf4j
 @ComponentScan(basePackages = {"com.zcj.common.config"})
 @ConfigurationPropertiesScan("com.zcj.common.config")
-@AutoConfigureAfter(name = "com.zcj.common.config.JWTProperties")
+@AutoConfigureAfter(name = {"com.zcj.common.config.JWTProperties",
+        "org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration"})
 public class UtilsAutoConfiguration {
 
     /**
@@ -39,6 +45,34 @@ public class UtilsAutoConfiguration {
     @ConditionalOnBean(JWTProperties.class)
     public JWTUtil jwtUtil(JWTProperties jwtProperties){
         log.info("jwt util 已加载, secretKey: {}, ttlMills: {}", jwtProperties.getSecretKey(), jwtProperties.getTtlMillis());
-        return new JWTUtil(jwtProperties.getSecretKey(), jwtProperties.getTtlMillis());
+        return new JWTUtil(jwtProperties.getSecretKey(), jwtProperties.getTtlMillis(), jwtProperties.getVerifyCacheSize());
+    }
+
+    /**
+     * 网关响应缓存失效通知
+     */
+    @Bean
+    @ConditionalOnBean(StringRedisTemplate.class)
+    public ResponseCacheInvalidator responseCacheInvalidator(StringRedisTemplate redisTemplate) {
+        return new ResponseCacheInvalidator(redisTemplate);
+    }
+
+    /**
+     * 群成员缓存，成员加载器由各服务提供
+     */
+    @Bean
+    @ConditionalOnBean(StringRedisTemplate.class)
+    public GroupMembershipCache groupMembershipCache(StringRedisTemplate redisTemplate,
+                                                     ObjectProvider<GroupMembershipCache.Loader> loaderProvider) {
+        return new GroupMembershipCache(redisTemplate, loaderProvider);
+    }
+
+    /**
+     * 数据同步通知（广播给所有 netty 节点）
+     */
+    @Bean
+    @ConditionalOnBean(StringRedisTemplate.class)
+    public SyncNotifier syncNotifier(StringRedisTemplate redisTemplate) {
+        return new SyncNotifier(redisTemplate);
     }
 }
@@ -15,4 +15,6 @@ import org.springframework.stereotype.Component;
 public class JWTProperties {
     private String secretKey;
     private Long ttlMillis;
+    // 已验证token缓存的最大条目数，0表示不缓存
+    private Integer verifyCacheSize = 100_000;
 }
@@ -1,8 +1,12 @@
 package com.zcj.common.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class ChatMessageSyncDTO {
     Long sessionId;
     Long lastMessageId;
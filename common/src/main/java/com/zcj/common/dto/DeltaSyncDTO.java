@@ -0,0 +1,20 @@
+package com.zcj.common.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统一增量同步请求
+ */
+@Data
+public class DeltaSyncDTO {
+    // 版本向量：表名(chat_session、chat_group、group_member、user_friend、friend_request) -> 上次同步到的更新时间，
+    // change_seq -> 上次同步到的变更日志序号（带上时会话、群组、群成员按变更日志同步）
+    Map<String, Long> versions = new HashMap<>();
+    // 各会话上次同步到的消息ID
+    List<ChatMessageSyncDTO> messages = new ArrayList<>();
+}
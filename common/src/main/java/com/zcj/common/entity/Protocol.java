@@ -19,6 +19,14 @@ public class Protocol {
     public static final int ORDER_SYNC = 3 << 16;         // 同步命令
     public static final int ORDER_MESSAGE = 4 << 16;      // 消息命令
     public static final int ORDER_ACK = 5 << 16;          // 消息响应
+    public static final int ORDER_HEARTBEAT = 6 << 16;    // 心跳
+    public static final int ORDER_RECONNECT = 7 << 16;    // 要求客户端重连到其他节点（节点下线排空）
+
+    // 标志位（命令类型的最高4位，不属于命令值）
+    public static final int FLAG_MASK = 0xF0000000;
+    public static final int FLAG_CONTINUATION = 1 << 30;  // 分片帧：后面还有同一消息(identityId相同)的分片
+    // 命令值掩码（去掉标志位后的高16位）
+    public static final int ORDER_MASK = 0x0FFF0000;
 
     // 内容类型（低16位：消息载体类型）
     public static final int CONTENT_FAILED = -1;       // 失败响应
@@ -30,6 +38,10 @@ public class Protocol {
     public static final int CONTENT_OTHER_FILE = 5;    // 其他文件类型
     public static final int CONTENT_LOCATION = 6;      // 位置消息
 
+    // 心跳内容类型（仅用于 ORDER_HEARTBEAT）
+    public static final int HEARTBEAT_PING = 0;        // 客户端探测
+    public static final int HEARTBEAT_PONG = 1;        // 服务端应答
+
     // 长度字段偏移量：魔数(2) + 版本(2) + 类型(4) + fromId(8) + identityId(8) + sessionId(8) + messageId(8) + 时间戳(8) + 长度(4)
     public static final int LengthFiledBias = 2 + 2 + 4 + 8 + 8 + 8 + 8 + 8;
 
@@ -228,6 +240,15 @@ public class Protocol {
         return (type & target) == target;
     }
 
+    /**
+     * 判断命令类型（高16位）是否为目标命令
+     * 命令类型是枚举值而非位标志，例如 ORDER_HEARTBEAT 同时包含 ORDER_AUTH 和 ORDER_MESSAGE 的位，
+     * 判断命令时应使用该方法而不是 hasType
+     */
+    public boolean isOrder(int orderType) {
+        return getOrderType() == orderType;
+    }
+
     /**
      * 获取内容类型（低16位）
      */
@@ -236,17 +257,38 @@ public class Protocol {
     }
 
     /**
-     * 获取命令类型（高16位）
+     * 获取命令类型（高16位，不含标志位）
      */
     public int getOrderType() {
-        return this.type & 0xFFFF0000;
+        return this.type & ORDER_MASK;
     }
 
     /**
-     * 设置命令类型和内容类型
+     * 设置命令类型和内容类型（保留已有的标志位）
      */
     public void setType(int orderType, int contentType) {
-        this.type = (orderType & 0xFFFF0000) | (contentType & 0x0000FFFF);
+        this.type = (this.type & FLAG_MASK) | (orderType & ORDER_MASK) | (contentType & 0x0000FFFF);
+    }
+
+    /**
+     * 是否带有标志位
+     */
+    public boolean hasFlag(int flag) {
+        return (type & flag) == flag;
+    }
+
+    /**
+     * 设置或清除标志位
+     */
+    public void setFlag(int flag, boolean value) {
+        this.type = value ? (type | flag) : (type & ~flag);
+    }
+
+    /**
+     * 是否为分片帧（后面还有分片）
+     */
+    public boolean isContinuation() {
+        return hasFlag(FLAG_CONTINUATION);
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.zcj.common.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+@Schema(description = "用户变更日志")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("user_change_log")
+public class UserChangeLog implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /********************* 变更的表 *********************/
+    public static final String TABLE_CHAT_SESSION = "chat_session";
+    public static final String TABLE_CHAT_GROUP = "chat_group";
+    public static final String TABLE_GROUP_MEMBER = "group_member";
+
+    @Schema(description = "用户ID")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long userId;
+
+    @Schema(description = "用户内递增的变更序号")
+    private Long seq;
+
+    @Schema(description = "变更的表")
+    private String tableName;
+
+    @Schema(description = "变更记录ID（会话ID、群聊ID）")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long refId;
+
+    @Schema(description = "群成员的用户ID，为空表示该群的全部成员")
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long subId;
+
+    @Schema(description = "创建时间戳")
+    private Long createdAt;
+
+    public static UserChangeLog session(long sessionId) {
+        return new UserChangeLog(null, null, TABLE_CHAT_SESSION, sessionId, null, null);
+    }
+
+    public static UserChangeLog group(long groupId) {
+        return new UserChangeLog(null, null, TABLE_CHAT_GROUP, groupId, null, null);
+    }
+
+    public static UserChangeLog member(long groupId, long userId) {
+        return new UserChangeLog(null, null, TABLE_GROUP_MEMBER, groupId, userId, null);
+    }
+
+    public static UserChangeLog allMembers(long groupId) {
+        return new UserChangeLog(null, null, TABLE_GROUP_MEMBER, groupId, null, null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.zcj.common.feign;
+
+import com.zcj.common.vo.Result;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+
+/**
+ * 在线状态查询，每个Netty节点都持有全集群的在线视图，负载均衡到任一节点即可
+ */
+@Component
+@FeignClient(name = "service-netty", contextId = "presenceFeignClient")
+public interface PresenceFeignClient {
+
+    @PostMapping("/admin/presence")
+    Result<List<Long>> filterOnline(@RequestBody List<Long> ids);
+}
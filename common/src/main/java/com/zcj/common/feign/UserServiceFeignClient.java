@@ -0,0 +1,28 @@
+package com.zcj.common.feign;
+
+import com.zcj.common.entity.FriendRequest;
+import com.zcj.common.entity.UserFriend;
+import com.zcj.common.vo.Result;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+
+/**
+ * 用户服务的好友数据同步（服务间调用，显式携带用户ID请求头）
+ */
+@Component
+@FeignClient(name = "service-user", contextId = "userServiceFeignClient")
+public interface UserServiceFeignClient {
+
+    @GetMapping("/api/friend/sync")
+    Result<List<UserFriend>> syncUserFriend(@RequestHeader("X-User-Id") Long userId,
+                                            @RequestParam(value = "latestAt", required = false) Long latestAt);
+
+    @GetMapping("/api/friend/request/sync")
+    Result<List<FriendRequest>> syncRequest(@RequestHeader("X-User-Id") Long userId,
+                                            @RequestParam(value = "latestAt", required = false) Long latestAt);
+}
@@ -0,0 +1,240 @@
+package com.zcj.common.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 群成员缓存（service-chat 与 service-netty 共用）
+ * <p>
+ * 每个群的成员保存为有序 long[] 快照，并带有单调递增的版本号（Redis 计数器）。
+ * 成员变更后写入方递增版本并通过 Redis 发布增量（新增/移除的成员），各实例在本地快照上
+ * 原地应用增量而不是整体失效；版本不连续（漏收消息）时丢弃本地快照，下次使用时重新加载。
+ * 增量是幂等的集合操作，加载与增量交错时重复应用不会出错。
+ * <p>
+ * 为防止漏收消息后长期不再有变更的群一直使用旧快照，读取时每隔 {@link #VERSION_CHECK_MILLIS}
+ * 与 Redis 中的版本核对一次，快照写入后最长保留 5 分钟。
+ */
+@Slf4j
+public class GroupMembershipCache implements MessageListener {
+
+    // 成员增量频道，消息格式：群ID|版本|操作(+ - x)|逗号分隔的用户ID
+    public static final String MEMBERSHIP_CHANNEL = "group:membership";
+    // 群成员版本号
+    public static final String VERSION_KEY = "group:members:version:";
+
+    private static final char OP_ADD = '+';
+    private static final char OP_REMOVE = '-';
+    private static final char OP_CLEAR = 'x';
+
+    // 读取时核对 Redis 版本的间隔
+    static final long VERSION_CHECK_MILLIS = 10_000;
+
+    /**
+     * 群成员加载器，各服务按自己的数据源实现（只返回未退出的成员）
+     * 不要在事务中调用 get()：加载会使用调用方事务的连接，可重复读的旧快照会以当前版本号被缓存。
+     * 需要准确成员列表的事务（如写变更日志）应锁定群聊行后直接查询数据库。
+     */
+    public interface Loader {
+        List<Long> load(long groupId);
+    }
+
+    /**
+     * 某个版本的群成员快照（不可变）
+     */
+    public record Snapshot(long version, long[] members) {
+
+        public boolean contains(long userId) {
+            return Arrays.binarySearch(members, userId) >= 0;
+        }
+
+        public int size() {
+            return members.length;
+        }
+
+        public List<Long> memberList() {
+            return Arrays.stream(members).boxed().toList();
+        }
+
+        Snapshot add(long[] ids, long newVersion) {
+            long[] merged = new long[members.length + ids.length];
+            int i = 0, j = 0, k = 0;
+            while (i < members.length || j < ids.length) {
+                long next;
+                if (j >= ids.length || (i < members.length && members[i] <= ids[j])) {
+                    next = members[i++];
+                } else {
+                    next = ids[j++];
+                }
+                if (k == 0 || merged[k - 1] != next) {
+                    merged[k++] = next;
+                }
+            }
+            return new Snapshot(newVersion, k == merged.length ? merged : Arrays.copyOf(merged, k));
+        }
+
+        Snapshot remove(long[] ids, long newVersion) {
+            long[] remaining = new long[members.length];
+            int k = 0;
+            for (long member : members) {
+                if (Arrays.binarySearch(ids, member) < 0) {
+                    remaining[k++] = member;
+                }
+            }
+            return new Snapshot(newVersion, Arrays.copyOf(remaining, k));
+        }
+    }
+
+    /**
+     * 缓存项：快照与最近一次核对版本的时间
+     */
+    private record Entry(Snapshot snapshot, long checkedAt) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectProvider<Loader> loaderProvider;
+    private final Cache<Long, Entry> cache = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    public GroupMembershipCache(StringRedisTemplate redisTemplate, ObjectProvider<Loader> loaderProvider) {
+        this.redisTemplate = redisTemplate;
+        this.loaderProvider = loaderProvider;
+    }
+
+    public Snapshot get(long groupId) {
+        Entry entry = cache.get(groupId, this::load);
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt() >= VERSION_CHECK_MILLIS) {
+            entry = recheck(groupId, entry, now);
+        }
+        return entry.snapshot();
+    }
+
+    /**
+     * 与 Redis 中的版本核对，不一致（漏收了增量）时重新加载
+     */
+    private Entry recheck(long groupId, Entry entry, long now) {
+        String version;
+        try {
+            version = redisTemplate.opsForValue().get(VERSION_KEY + groupId);
+        } catch (Exception e) {
+            log.warn("群成员版本核对失败: group={}, cause: {}", groupId, e.toString());
+            return entry;
+        }
+        long current = version == null ? 0 : Long.parseLong(version);
+        if (current == entry.snapshot().version()) {
+            Entry checked = new Entry(entry.snapshot(), now);
+            cache.asMap().replace(groupId, entry, checked);
+            return checked;
+        }
+        cache.asMap().remove(groupId, entry);
+        return cache.get(groupId, this::load);
+    }
+
+    private Entry load(long groupId) {
+        Loader loader = loaderProvider.getIfAvailable();
+        if (loader == null) {
+            throw new IllegalStateException("未配置群成员加载器");
+        }
+        // 先读版本再读成员：读取期间发生的变更会以更大的版本到达并被应用
+        String version = redisTemplate.opsForValue().get(VERSION_KEY + groupId);
+        long[] members = loader.load(groupId).stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return new Entry(new Snapshot(version == null ? 0 : Long.parseLong(version), members),
+                System.currentTimeMillis());
+    }
+
+    // ========================= 写入方 ==========================
+
+    public void added(long groupId, Collection<Long> userIds) {
+        if (!userIds.isEmpty()) change(groupId, OP_ADD, userIds);
+    }
+
+    public void removed(long groupId, Collection<Long> userIds) {
+        if (!userIds.isEmpty()) change(groupId, OP_REMOVE, userIds);
+    }
+
+    /**
+     * 群解散，所有实例丢弃该群的快照
+     */
+    public void cleared(long groupId) {
+        change(groupId, OP_CLEAR, List.of());
+    }
+
+    private void change(long groupId, char op, Collection<Long> userIds) {
+        StringBuilder ids = new StringBuilder();
+        for (Long userId : userIds) {
+            if (!ids.isEmpty()) ids.append(',');
+            ids.append(userId);
+        }
+        Runnable publish = () -> {
+            try {
+                Long version = redisTemplate.opsForValue().increment(VERSION_KEY + groupId);
+                String message = groupId + "|" + version + "|" + op + "|" + ids;
+                apply(message);
+                redisTemplate.convertAndSend(MEMBERSHIP_CHANNEL, message);
+            } catch (Exception e) {
+                // 无法通知其他实例时本地快照也不再可信
+                cache.invalidate(groupId);
+                log.warn("群成员变更通知发送失败: group={}, cause: {}", groupId, e.toString());
+            }
+        };
+        // 在事务中调用时于提交后发送，避免其他实例在提交前重新加载到旧数据
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish.run();
+                }
+            });
+        } else {
+            publish.run();
+        }
+    }
+
+    // ========================= 订阅方 ==========================
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            apply(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("群成员变更消息处理失败: {}", e.toString());
+        }
+    }
+
+    void apply(String message) {
+        String[] parts = message.split("\\|", -1);
+        long groupId = Long.parseLong(parts[0]);
+        long version = Long.parseLong(parts[1]);
+        char op = parts[2].charAt(0);
+        long[] ids = parts[3].isEmpty() ? new long[0]
+                : Arrays.stream(parts[3].split(",")).mapToLong(Long::parseLong).sorted().toArray();
+        cache.asMap().computeIfPresent(groupId, (key, entry) -> {
+            Snapshot snapshot = entry.snapshot();
+            if (version <= snapshot.version()) {
+                // 已包含该变更（如本机发布后收到的回环消息）
+                return entry;
+            }
+            if (op == OP_CLEAR || version != snapshot.version() + 1) {
+                // 群解散或漏掉了中间的变更，下次使用时重新加载
+                return null;
+            }
+            Snapshot applied = op == OP_ADD ? snapshot.add(ids, version) : snapshot.remove(ids, version);
+            return new Entry(applied, entry.checkedAt());
+        });
+    }
+}
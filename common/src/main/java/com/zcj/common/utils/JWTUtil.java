@@ -1,33 +1,83 @@
 package com.zcj.common.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Getter
 public class JWTUtil {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     private final Key secretKey;
     private final long ttlMillis;
+    // 解析器线程安全，构建一次复用
+    @Getter(AccessLevel.NONE)
+    private final JwtParser parser;
+    // 已验证token缓存：token的SHA-256摘要 -> Claims，条目在token过期时淘汰
+    @Getter(AccessLevel.NONE)
+    private final Cache<String, Claims> verifiedCache;
 
     public JWTUtil(String secretKey, Long ttlMillis) {
+        this(secretKey, ttlMillis, 0);
+    }
+
+    /**
+     * @param verifyCacheSize 已验证token缓存的最大条目数，0表示不缓存
+     */
+    public JWTUtil(String secretKey, Long ttlMillis, Integer verifyCacheSize) {
         // 验证密钥长度，HS256至少需要256位(32字节)
         if (secretKey.getBytes(StandardCharsets.UTF_8).length < 32) {
             throw new IllegalArgumentException("Secret key must be at least 32 bytes for HS256");
         }
         this.secretKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
         this.ttlMillis = ttlMillis;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(this.secretKey)
+                .build();
+        this.verifiedCache = verifyCacheSize == null || verifyCacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(verifyCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return remainingNanos(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return remainingNanos(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     /**
@@ -51,7 +101,35 @@ public class JWTUtil {
      * 验证JWT签名有效性
      */
     public boolean validate(String jwt) {
-        return parseClaimsJws(jwt) != null;
+        return verify(jwt) != null;
+    }
+
+    /**
+     * 一次性完成验证与解析，验证失败返回null
+     * 最近验证过的token直接命中缓存，跳过签名计算与JSON解析；返回的Claims为共享对象，调用方不应修改
+     */
+    public Claims verify(String jwt) {
+        if (jwt == null || jwt.isEmpty()) {
+            return null;
+        }
+        if (verifiedCache == null) {
+            return parseClaimsJws(jwt);
+        }
+        String digest = digest(jwt);
+        Claims claims = verifiedCache.getIfPresent(digest);
+        if (claims != null) {
+            // 缓存按过期时间淘汰，这里再判断一次，避免淘汰延迟导致放行过期token
+            Date expiration = claims.getExpiration();
+            if (expiration == null || expiration.getTime() > System.currentTimeMillis()) {
+                return claims;
+            }
+            verifiedCache.invalidate(digest);
+        }
+        claims = parseClaimsJws(jwt);
+        if (claims != null) {
+            verifiedCache.put(digest, claims);
+        }
+        return claims;
     }
 
     /**
@@ -62,11 +140,7 @@ public class JWTUtil {
             return null;
         }
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(jwt)
-                    .getBody();
+            return parser.parseClaimsJws(jwt).getBody();
         } catch (ExpiredJwtException e) {
             log.warn("JWT已过期: {}", e.getMessage());
         } catch (JwtException | IllegalArgumentException e) {
@@ -116,7 +190,7 @@ public class JWTUtil {
      * 验证JWT并读取Payload（验证失败返回null）
      */
     public Map<String, Object> getPayloadIfValid(String jwt) {
-        Claims claims = parseClaimsJws(jwt);
+        Claims claims = verify(jwt);
         if (claims != null) {
             return new HashMap<>(claims);
         }
@@ -127,7 +201,7 @@ public class JWTUtil {
      * 验证JWT并提取特定声明（验证失败返回null）
      */
     public <T> T getClaimIfValid(String jwt, String claimName) {
-        Claims claims = parseClaimsJws(jwt);
+        Claims claims = verify(jwt);
         if (claims != null) {
             return (T) claims.get(claimName);
         }
@@ -138,12 +212,29 @@ public class JWTUtil {
      * 获取令牌过期时间
      */
     public Date getExpirationIfValid(String jwt) {
-        Claims claims = parseClaimsJws(jwt);
+        Claims claims = verify(jwt);
         return claims != null ? claims.getExpiration() : null;
     }
 
     // ==================== 辅助方法 ====================
 
+    /**
+     * token的SHA-256摘要（缓存键，避免在内存中长期保存原始token）
+     */
+    private static String digest(String jwt) {
+        byte[] hash = SHA256.get().digest(jwt.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static long remainingNanos(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            // 无过期时间的token最多缓存10分钟
+            return TimeUnit.MINUTES.toNanos(10);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+    }
+
     private static Map<String, Object> parseJsonToMap(String json) {
         try {
             if (json == null || json.trim().isEmpty()) {
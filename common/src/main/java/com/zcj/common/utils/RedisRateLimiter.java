@@ -0,0 +1,150 @@
+package com.zcj.common.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 集群令牌桶限流（Redis 保存全局预算，本地预扣）
+ * <p>
+ * 令牌桶状态保存在 Redis，由 Lua 脚本原子地补充与扣减。每个节点按 batch 个令牌为单位
+ * 从 Redis 批量领取到本地，请求只在本地扣减，不访问 Redis；本地余量不足一半时在后台线程领取下一批，
+ * 因此调用方（网关响应式线程、Netty 事件循环）不会被阻塞。
+ * 新键的第一批令牌先在本地预支，首次领取时从 Redis 扣回，保证全局计数准确。
+ */
+@Slf4j
+public class RedisRateLimiter {
+
+    // 领取令牌的后台线程（与调用线程隔离）
+    private static final ExecutorService REFILL_EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "rate-limiter-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 令牌桶脚本：按时间补充令牌后领取最多 ARGV[3] 个，返回实际领取数
+    private static final String TAKE_SCRIPT = """
+            local rate = tonumber(ARGV[1])
+            local capacity = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local data = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(data[1]) or capacity
+            local ts = tonumber(data[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+
+            local granted = math.min(requested, math.floor(tokens))
+            tokens = tokens - granted
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+            return granted
+            """;
+    private static final DefaultRedisScript<Long> TAKE_LUA_SCRIPT = new DefaultRedisScript<>(TAKE_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final double ratePerSecond;
+    private final int capacity;
+    private final int batch;
+    // 领取失败（全局预算耗尽）后的最小重试间隔
+    private final long retryIntervalMillis;
+    // 限流键 -> 本地令牌
+    private final Cache<String, Lease> leases;
+
+    /**
+     * @param name          限流器名称（Redis 键前缀的一部分）
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param capacity      桶容量（允许的突发量）
+     * @param batch         每次从 Redis 领取的令牌数，越大访问 Redis 越少，但节点间的分配越粗
+     */
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, String name,
+                            double ratePerSecond, int capacity, int batch) {
+        if (ratePerSecond <= 0 || capacity <= 0 || batch <= 0) {
+            throw new IllegalArgumentException("限流参数必须大于0");
+        }
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = "rate_limit:" + name + ":";
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = capacity;
+        this.batch = Math.min(batch, capacity);
+        this.retryIntervalMillis = Math.max(10, (long) (this.batch * 1000 / ratePerSecond));
+        this.leases = Caffeine.newBuilder()
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 尝试获取一个令牌（不阻塞）
+     */
+    public boolean tryAcquire(String key) {
+        Lease lease = leases.get(key, k -> new Lease(batch));
+        boolean acquired = lease.tryTake();
+        if (lease.tokens.get() < (batch + 1) / 2) {
+            refill(key, lease);
+        }
+        return acquired;
+    }
+
+    private void refill(String key, Lease lease) {
+        long now = System.currentTimeMillis();
+        if (now < lease.nextRefillAt || !lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REFILL_EXECUTOR.execute(() -> {
+                try {
+                    Long granted = redisTemplate.execute(TAKE_LUA_SCRIPT, Collections.singletonList(keyPrefix + key),
+                            String.valueOf(ratePerSecond), String.valueOf(capacity), String.valueOf(batch));
+                    int tokens = granted != null ? granted.intValue() : 0;
+                    // 首次领取时扣回预支的令牌
+                    if (lease.advanced) {
+                        lease.advanced = false;
+                        tokens -= batch;
+                    }
+                    lease.tokens.addAndGet(tokens);
+                    lease.nextRefillAt = granted == null || granted == 0 ? System.currentTimeMillis() + retryIntervalMillis : 0;
+                } catch (Exception e) {
+                    // Redis 不可用时只依靠本地余量，稍后重试
+                    log.warn("限流令牌领取失败: {}, cause: {}", key, e.toString());
+                    lease.nextRefillAt = System.currentTimeMillis() + retryIntervalMillis;
+                } finally {
+                    lease.refilling.set(false);
+                }
+            });
+        } catch (Exception e) {
+            lease.refilling.set(false);
+        }
+    }
+
+    private static final class Lease {
+        private final AtomicInteger tokens;
+        private final AtomicBoolean refilling = new AtomicBoolean(false);
+        // 本地预支了第一批令牌，尚未从 Redis 扣回
+        private volatile boolean advanced = true;
+        private volatile long nextRefillAt = 0;
+
+        private Lease(int advance) {
+            this.tokens = new AtomicInteger(advance);
+        }
+
+        private boolean tryTake() {
+            int current;
+            do {
+                current = tokens.get();
+                if (current <= 0) return false;
+            } while (!tokens.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.zcj.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 网关响应缓存失效通知
+ * <p>
+ * 修改用户、群组等信息后调用，通过 Redis 发布订阅通知所有网关实例淘汰带有对应标签的缓存；
+ * 在事务中调用时于提交后发送，避免网关在提交前重新缓存旧数据。
+ */
+@Slf4j
+public class ResponseCacheInvalidator {
+
+    // 失效通知频道，消息内容为逗号分隔的标签
+    public static final String INVALIDATE_CHANNEL = "gateway:cache:invalidate";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public ResponseCacheInvalidator(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public static String userTag(Long userId) {
+        return "user:" + userId;
+    }
+
+    public static String groupTag(Long groupId) {
+        return "group:" + groupId;
+    }
+
+    public void invalidateUser(Long userId) {
+        invalidate(userTag(userId));
+    }
+
+    public void invalidateGroup(Long groupId) {
+        invalidate(groupTag(groupId));
+    }
+
+    public void invalidate(String... tags) {
+        if (tags.length == 0) return;
+        String message = String.join(",", tags);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, message);
+        } catch (Exception e) {
+            // 通知失败时缓存在TTL后自然过期
+            log.warn("网关缓存失效通知发送失败: {}, cause: {}", message, e.toString());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.zcj.common.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * 数据同步通知
+ * <p>
+ * 数据变更后调用，通过 Redis 发布订阅广播给所有 netty 节点，各节点只向本机在线的用户推送同步信号。
+ * 在事务中调用时先按用户合并，提交后按相同的表集合分组，每组发送一条消息；
+ * 不在事务中调用时立即发送。
+ */
+@Slf4j
+public class SyncNotifier {
+
+    // 同步通知频道，消息格式：逗号分隔的表名|逗号分隔的用户ID
+    public static final String SYNC_CHANNEL = "netty:sync";
+
+    public static final String CHAT_SESSION = "chat_session";
+    public static final String CHAT_GROUP = "chat_group";
+    public static final String GROUP_MEMBER = "group_member";
+    public static final String USER_FRIEND = "user_friend";
+    public static final String FRIEND_REQUEST = "friend_request";
+
+    // 单条消息包含的用户数
+    private static final int USER_BATCH = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public SyncNotifier(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void notify(Long userId, String... tables) {
+        notify(List.of(userId), tables);
+    }
+
+    public void notify(Collection<Long> userIds, String... tables) {
+        if (userIds.isEmpty() || tables.length == 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending().merge(userIds, tables);
+        } else {
+            Pending pending = new Pending();
+            pending.merge(userIds, tables);
+            publish(pending);
+        }
+    }
+
+    /**
+     * 当前事务的待发送通知，首次调用时注册提交回调
+     */
+    private Pending pending() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SyncNotifier.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private void publish(Pending pending) {
+        // 按表集合分组：同一操作通知的用户通常需要同步相同的表
+        Map<Set<String>, List<Long>> groups = new LinkedHashMap<>();
+        pending.tables.forEach((userId, tables) ->
+                groups.computeIfAbsent(tables, key -> new ArrayList<>()).add(userId));
+        groups.forEach((tables, userIds) -> {
+            String prefix = String.join(",", tables) + "|";
+            for (int i = 0; i < userIds.size(); i += USER_BATCH) {
+                StringBuilder message = new StringBuilder(prefix);
+                for (int j = i; j < Math.min(userIds.size(), i + USER_BATCH); j++) {
+                    if (j > i) message.append(',');
+                    message.append(userIds.get(j));
+                }
+                try {
+                    redisTemplate.convertAndSend(SYNC_CHANNEL, message.toString());
+                } catch (Exception e) {
+                    // 客户端重连或下次同步时仍会拉取到变更
+                    log.warn("同步通知发送失败: tables={}, users={}, cause: {}", tables, userIds.size(), e.toString());
+                }
+            }
+        });
+    }
+
+    private static class Pending {
+        // 用户ID -> 需要同步的表（保持调用顺序）
+        final Map<Long, Set<String>> tables = new LinkedHashMap<>();
+
+        void merge(Collection<Long> userIds, String[] names) {
+            for (Long userId : userIds) {
+                Collections.addAll(tables.computeIfAbsent(userId, key -> new LinkedHashSet<>()), names);
+            }
+        }
+    }
+}
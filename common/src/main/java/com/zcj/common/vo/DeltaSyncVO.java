@@ -0,0 +1,29 @@
+package com.zcj.common.vo;
+
+import com.zcj.common.entity.*;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 统一增量同步结果
+ */
+@Data
+public class DeltaSyncVO {
+    // 新的版本向量，客户端下次同步时原样带回
+    private Map<String, Long> versions = new HashMap<>();
+    private List<ChatSession> chatSessions = Collections.emptyList();
+    private List<ChatGroup> chatGroups = Collections.emptyList();
+    private List<GroupMember> groupMembers = Collections.emptyList();
+    private List<UserFriend> userFriends = Collections.emptyList();
+    private List<FriendRequest> friendRequests = Collections.emptyList();
+    // 按 (会话ID, 消息ID) 排序
+    private List<ChatMessage> messages = Collections.emptyList();
+    // 消息数超过单次上限被截断的会话，客户端需以收到的最后一条消息ID继续同步
+    private List<Long> truncatedSessionIds = Collections.emptyList();
+    // 变更日志未读完，客户端需以新的版本向量继续同步
+    private boolean hasMore;
+}
@@ -0,0 +1,26 @@
+package com.zcj.common.vo;
+
+import com.zcj.common.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量同步消息结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSyncVO {
+    // 按 (会话ID, 消息ID) 排序
+    private List<ChatMessage> messages = Collections.emptyList();
+    // 消息数超过单次上限被截断的会话，客户端需以收到的最后一条消息ID继续同步
+    private List<Long> truncatedSessionIds = Collections.emptyList();
+
+    public boolean isHasMore() {
+        return !truncatedSessionIds.isEmpty();
+    }
+}
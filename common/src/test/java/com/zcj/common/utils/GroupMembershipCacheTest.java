@@ -0,0 +1,70 @@
+package com.zcj.common.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 群成员缓存：增量按版本顺序原地应用，重复消息忽略，版本不连续时重新加载
+ */
+class GroupMembershipCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private GroupMembershipCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenReturn("5");
+        ObjectProvider<GroupMembershipCache.Loader> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(groupId -> {
+            loads.incrementAndGet();
+            return List.of(30L, 10L, 20L);
+        });
+        cache = new GroupMembershipCache(redisTemplate, provider);
+    }
+
+    @Test
+    void appliesDeltasInPlace() {
+        GroupMembershipCache.Snapshot snapshot = cache.get(1L);
+        assertEquals(5, snapshot.version());
+        assertArrayEquals(new long[]{10, 20, 30}, snapshot.members());
+
+        cache.apply("1|6|+|25,40,10");
+        cache.apply("1|7|-|20");
+        // 回环或重复的消息
+        cache.apply("1|7|-|20");
+        cache.apply("1|6|+|25,40,10");
+
+        snapshot = cache.get(1L);
+        assertEquals(7, snapshot.version());
+        assertArrayEquals(new long[]{10, 25, 30, 40}, snapshot.members());
+        assertTrue(snapshot.contains(25));
+        assertFalse(snapshot.contains(20));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void reloadsOnGapOrClear() {
+        cache.get(1L);
+        cache.apply("1|8|+|50");
+        assertArrayEquals(new long[]{10, 20, 30}, cache.get(1L).members());
+        assertEquals(2, loads.get());
+
+        cache.apply("1|6|x|");
+        cache.get(1L);
+        assertEquals(3, loads.get());
+    }
+}
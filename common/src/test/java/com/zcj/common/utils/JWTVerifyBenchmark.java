@@ -0,0 +1,89 @@
+package com.zcj.common.utils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 验证基准：
+ * legacy - 旧实现，每次构建解析器；
+ * cold   - 复用解析器，不走缓存（首次出现的token）；
+ * warm   - 复用解析器，token已在缓存中（同一token的重复请求）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JWTVerifyBenchmark {
+
+    private static final String SECRET = "GemChat-benchmark-secret-key-0123456789";
+    private static final int TOKEN_COUNT = 1024;
+
+    private Key key;
+    private JWTUtil uncached;
+    private JWTUtil cached;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        uncached = new JWTUtil(SECRET, 3_600_000L, 0);
+        cached = new JWTUtil(SECRET, 3_600_000L, 100_000);
+        tokens = new String[TOKEN_COUNT];
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            Map<String, Object> claims = new HashMap<>();
+            claims.put("userId", 1_000_000_000_000L + i);
+            claims.put("platform", "Android");
+            claims.put("deviceHash", "a1b2c3d4e5f67890");
+            tokens[i] = cached.create(claims);
+            // 预热缓存
+            cached.verify(tokens[i]);
+        }
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(TOKEN_COUNT)];
+    }
+
+    @Benchmark
+    public Claims legacy() {
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(nextToken())
+                .getBody();
+    }
+
+    @Benchmark
+    public Claims cold() {
+        return uncached.verify(nextToken());
+    }
+
+    @Benchmark
+    public Claims warm() {
+        return cached.verify(nextToken());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JWTVerifyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
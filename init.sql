@@ -136,6 +136,26 @@ create table user
 )
     comment '用户基本信息表';
 
+create table user_change_log
+(
+    user_id    bigint      not null comment '用户ID',
+    seq        bigint      not null comment '用户内递增的变更序号',
+    table_name varchar(32) not null comment '变更的表：chat_session、chat_group、group_member',
+    ref_id     bigint      not null comment '变更记录ID（会话ID、群聊ID）',
+    sub_id     bigint      null comment '群成员的用户ID，为空表示该群的全部成员',
+    created_at bigint      not null comment '创建时间戳',
+    primary key (user_id, seq)
+)
+    comment '用户变更日志表（增量同步按序号范围读取）';
+
+create table user_change_seq
+(
+    user_id bigint not null comment '用户ID'
+        primary key,
+    seq     bigint not null comment '已分配的最大变更序号'
+)
+    comment '用户变更序号表';
+
 create table user_friend
 (
     id            bigint unsigned        not null comment '关系ID，主键'
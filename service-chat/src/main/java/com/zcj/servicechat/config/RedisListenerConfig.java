@@ -0,0 +1,22 @@
+package com.zcj.servicechat.config;
+
+import com.zcj.common.utils.GroupMembershipCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       GroupMembershipCache groupMembershipCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 群成员增量
+        container.addMessageListener(groupMembershipCache, new ChannelTopic(GroupMembershipCache.MEMBERSHIP_CHANNEL));
+        return container;
+    }
+}
@@ -2,6 +2,7 @@ package com.zcj.servicechat.controller;
 
 import com.zcj.common.entity.ChatMessage;
 import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.common.vo.MessageSyncVO;
 import com.zcj.common.vo.Result;
 import com.zcj.servicechat.service.ChatMessageService;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -27,8 +28,8 @@ public class ChatMessageController {
     }
 
     @PostMapping("/syncBatch")
-    public Result<List<ChatMessage>> syncBatch(@RequestBody List<ChatMessageSyncDTO> list) {
-        List<ChatMessage> result = chatMessageService.syncBatch(list);
+    public Result<MessageSyncVO> syncBatch(@RequestBody List<ChatMessageSyncDTO> list) {
+        MessageSyncVO result = chatMessageService.syncBatch(list);
         return Result.success(result);
     }
 
@@ -63,9 +63,7 @@ public class ChatSessionController {
         if (lastUpdateAt == null) {
             lastUpdateAt = 0L;
         }
-        List<ChatSession> singleChatSessions = chatSessionService.syncSingleChatSession(userId, lastUpdateAt);
-        List<ChatSession> groupChatSessions = chatSessionService.syncGroupChatSession(userId, lastUpdateAt);
-        singleChatSessions.addAll(groupChatSessions);
-        return Result.success(singleChatSessions);
+        List<ChatSession> sessions = chatSessionService.syncChatSession(userId, lastUpdateAt);
+        return Result.success(sessions);
     }
 }
@@ -0,0 +1,31 @@
+package com.zcj.servicechat.controller;
+
+import com.zcj.common.context.UserContext;
+import com.zcj.common.dto.DeltaSyncDTO;
+import com.zcj.common.vo.DeltaSyncVO;
+import com.zcj.common.vo.Result;
+import com.zcj.servicechat.service.DeltaSyncService;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/chat/sync")
+@Tag(name = "统一增量同步接口")
+@Slf4j
+@AllArgsConstructor
+public class DeltaSyncController {
+
+    private final DeltaSyncService deltaSyncService;
+
+    /**
+     * 重连时一次获取所有数据的增量，替代会话、群组、群成员、好友、好友申请、消息的分别同步
+     */
+    @PostMapping("/delta")
+    public Result<DeltaSyncVO> delta(@RequestBody DeltaSyncDTO dto) {
+        Long userId = UserContext.getId();
+        DeltaSyncVO result = deltaSyncService.sync(userId, dto);
+        return Result.success(result);
+    }
+}
@@ -7,12 +7,23 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
 
+    /**
+     * 批量查询多个会话的增量消息，每个会话内按 message_id 升序，会话之间的顺序不保证（由调用方排序）
+     * @param limit 每个会话最多返回的消息数
+     */
     List<ChatMessage> selectBatchBySessionAndLastId(
-            @Param("list") List<ChatMessageSyncDTO> syncList
+            @Param("list") List<ChatMessageSyncDTO> syncList,
+            @Param("limit") int limit
+    );
+
+    List<Map<String, Object>> explainBatchBySessionAndLastId(
+            @Param("list") List<ChatMessageSyncDTO> syncList,
+            @Param("limit") int limit
     );
 
     // 批量插入方法
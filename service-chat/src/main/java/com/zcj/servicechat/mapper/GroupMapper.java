@@ -3,7 +3,16 @@ package com.zcj.servicechat.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.zcj.common.entity.ChatGroup;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 @Mapper
 public interface GroupMapper extends BaseMapper<ChatGroup> {
+
+    // 原子增减群成员数量，返回影响行数
+    int incrementNumber(@Param("groupId") Long groupId,
+                        @Param("delta") int delta,
+                        @Param("updatedAt") long updatedAt);
+
+    // 以共享锁锁定群聊行，与增减成员的事务互斥，返回影响行数
+    int lockForShare(@Param("groupId") Long groupId);
 }
@@ -3,7 +3,16 @@ package com.zcj.servicechat.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.zcj.common.entity.GroupMember;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface GroupMemberMapper extends BaseMapper<GroupMember> {
+
+    // 多行插入，主键 (group_id, user_id) 冲突时覆盖状态、角色与时间（保留备注）
+    int upsertBatch(@Param("list") List<GroupMember> members);
+
+    // 当前读群内未退出的成员（加共享锁，读到最新提交的数据），需在锁定群聊行之后的事务中调用
+    List<Long> selectMemberIdsForShare(@Param("groupId") Long groupId);
 }
@@ -0,0 +1,28 @@
+package com.zcj.servicechat.mapper;
+
+import com.zcj.common.entity.UserChangeLog;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface UserChangeLogMapper {
+
+    // 为一批用户各分配 count 个序号（行锁保证同一用户的序号串行递增）
+    int incrementSeq(@Param("userIds") Collection<Long> userIds, @Param("count") int count);
+
+    // 读取用户当前的最大序号（需在 incrementSeq 的同一事务中调用）
+    List<Map<String, Object>> selectSeqForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    Long selectSeq(@Param("userId") Long userId);
+
+    int batchInsert(@Param("list") List<UserChangeLog> logs);
+
+    // 按序号范围读取变更
+    List<UserChangeLog> selectSince(@Param("userId") Long userId,
+                                    @Param("seq") long seq,
+                                    @Param("limit") int limit);
+}
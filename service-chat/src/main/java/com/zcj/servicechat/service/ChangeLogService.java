@@ -0,0 +1,29 @@
+package com.zcj.servicechat.service;
+
+import com.zcj.common.entity.UserChangeLog;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户变更日志：每个用户一条按序号递增的变更流，增量同步只需按序号范围读取
+ */
+public interface ChangeLogService {
+
+    /**
+     * 为每个用户追加同一组变更（必须在业务事务中调用，与业务数据一起提交或回滚）
+     */
+    void record(Collection<Long> userIds, List<UserChangeLog> changes);
+
+    void record(Collection<Long> userIds, UserChangeLog change);
+
+    /**
+     * 用户当前的最大序号，没有任何变更时为0
+     */
+    long currentSeq(Long userId);
+
+    /**
+     * 读取序号大于 seq 的变更，按序号升序
+     */
+    List<UserChangeLog> since(Long userId, long seq, int limit);
+}
@@ -15,4 +15,9 @@ public interface ChatGroupService {
     ChatGroup info(long groupId);
 
     List<ChatGroup> sync(long lastUpdateAt, Long userId);
+
+    /**
+     * 按已知的群组ID列表同步群组信息（调用方已查询过用户所在的群组）
+     */
+    List<ChatGroup> syncByGroupIds(List<Long> groupIds, long lastUpdateAt);
 }
@@ -2,6 +2,7 @@ package com.zcj.servicechat.service;
 
 import com.zcj.common.entity.ChatMessage;
 import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.common.vo.MessageSyncVO;
 
 import java.util.List;
 
@@ -10,5 +11,9 @@ public interface ChatMessageService {
 
     List<ChatMessage> sync(Long sessionId, Long lastMessageId);
 
-    List<ChatMessage> syncBatch(List<ChatMessageSyncDTO> list);
+    /**
+     * 批量同步多个会话的增量消息，结果按 (会话ID, 消息ID) 排序
+     * 每个会话最多返回 SYNC_SESSION_LIMIT 条，被截断的会话记录在 truncatedSessionIds 中，需以最后一条消息ID继续同步
+     */
+    MessageSyncVO syncBatch(List<ChatMessageSyncDTO> list);
 }
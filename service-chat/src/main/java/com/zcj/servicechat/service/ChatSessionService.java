@@ -14,5 +14,15 @@ public interface ChatSessionService {
 
     List<ChatSession> syncGroupChatSession(Long userId, Long lastUpdateAt);
 
+    /**
+     * 按已知的群组ID列表同步群聊会话（调用方已查询过用户所在的群组）
+     */
+    List<ChatSession> syncGroupChatSessionByGroupIds(List<Long> groupIds, Long lastUpdateAt);
+
+    /**
+     * 同步单聊与群聊会话（两类查询并发执行）
+     */
+    List<ChatSession> syncChatSession(Long userId, Long lastUpdateAt);
+
     ChatSession addSingleSession(Long firstId, Long secondId);
 }
@@ -0,0 +1,12 @@
+package com.zcj.servicechat.service;
+
+import com.zcj.common.dto.DeltaSyncDTO;
+import com.zcj.common.vo.DeltaSyncVO;
+
+public interface DeltaSyncService {
+
+    /**
+     * 按版本向量一次返回用户所有数据的增量（会话、群组、群成员、好友、好友申请、消息）
+     */
+    DeltaSyncVO sync(Long userId, DeltaSyncDTO dto);
+}
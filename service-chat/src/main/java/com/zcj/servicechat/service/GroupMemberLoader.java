@@ -0,0 +1,30 @@
+package com.zcj.servicechat.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.zcj.common.entity.GroupMember;
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.servicechat.mapper.GroupMemberMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 群成员缓存的加载器
+ * 事务内的变更日志与通知接收者直接从数据库锁定读取，不经过缓存
+ */
+@Component
+@RequiredArgsConstructor
+public class GroupMemberLoader implements GroupMembershipCache.Loader {
+
+    private final GroupMemberMapper groupMemberMapper;
+
+    @Override
+    public List<Long> load(long groupId) {
+        return groupMemberMapper.selectList(new LambdaQueryWrapper<GroupMember>()
+                        .eq(GroupMember::getGroupId, groupId)
+                        .ne(GroupMember::getStatus, GroupMember.GROUP_MEMBER_STATUS_DELETED)
+                        .select(GroupMember::getUserId))
+                .stream().map(GroupMember::getUserId).toList();
+    }
+}
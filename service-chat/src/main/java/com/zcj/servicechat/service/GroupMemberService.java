@@ -11,7 +11,17 @@ public interface GroupMemberService {
 
     List<GroupMember> sync(Long lastUpdateAt);
 
+    /**
+     * 按已知的群组ID列表同步群成员（调用方已查询过用户所在的群组）
+     */
+    List<GroupMember> syncByGroupIds(List<Long> groupIds, Long lastUpdateAt);
+
     GroupMember update(GroupMember groupMember);
 
     void addBatch(Long groupId, List<Long> userIds);
+
+    /**
+     * 批量写入群成员（已存在的记录按新状态覆盖），需在事务中调用
+     */
+    void upsertBatch(List<GroupMember> members);
 }
@@ -0,0 +1,132 @@
+package com.zcj.servicechat.service;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.zcj.common.context.UserContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同步查询并发执行器
+ * <p>
+ * 登录同步时多个互不依赖的查询（多个会话分批、单聊/群聊会话等）并发执行，
+ * 总耗时接近最慢的单个查询。所有任务共用一个截止时间，超时后取消未完成的任务；
+ * 并发数不超过连接池大小的一半，避免同步请求占满连接池影响写入。
+ */
+@Slf4j
+@Component
+public class SyncExecutor {
+
+    private final ExecutorService executor;
+    // 同时执行的查询数上限
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    // 当前线程是否为同步任务线程：任务内再次并发时直接在当前线程执行，避免嵌套等待耗尽线程与许可
+    private static final ThreadLocal<Boolean> IN_TASK = new ThreadLocal<>();
+
+    public SyncExecutor(DataSource dataSource,
+                        @Value("${chat.sync.max-concurrency:8}") int maxConcurrency,
+                        @Value("${chat.sync.timeout-millis:5000}") long timeoutMillis) {
+        if (dataSource instanceof DruidDataSource druidDataSource) {
+            maxConcurrency = Math.min(maxConcurrency, Math.max(1, druidDataSource.getMaxActive() / 2));
+        }
+        this.permits = new Semaphore(maxConcurrency);
+        this.timeoutMillis = timeoutMillis;
+        this.executor = createExecutor(maxConcurrency);
+        log.info("同步查询并发数上限: {}, 超时: {}ms", maxConcurrency, timeoutMillis);
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // JDK 17 不支持虚拟线程
+        }
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "chat-sync-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 并发执行所有任务，按提交顺序返回结果
+     * 任一任务失败或超过截止时间时取消其余任务并抛出异常
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.size() == 1 || Boolean.TRUE.equals(IN_TASK.get())) {
+            List<T> results = new ArrayList<>(tasks.size());
+            try {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("同步查询失败", e);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        // 任务在其他线程执行，需要带上当前用户
+        Long userId = UserContext.getId();
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(() -> {
+                long remaining = deadline - System.nanoTime();
+                if (!permits.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException("等待查询许可超时");
+                }
+                UserContext.setId(userId);
+                IN_TASK.set(Boolean.TRUE);
+                try {
+                    return task.call();
+                } finally {
+                    IN_TASK.remove();
+                    UserContext.clearId();
+                    permits.release();
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException e) {
+            throw new RuntimeException("同步查询超时");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("同步查询失败", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("同步查询被中断");
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+package com.zcj.servicechat.service.impl;
+
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.servicechat.mapper.UserChangeLogMapper;
+import com.zcj.servicechat.service.ChangeLogService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Service
+@AllArgsConstructor
+public class ChangeLogServiceImpl implements ChangeLogService {
+
+    // 单条SQL包含的用户数
+    private static final int USER_BATCH = 500;
+    // 单条INSERT包含的变更日志行数
+    private static final int LOG_BATCH = 1000;
+
+    final UserChangeLogMapper userChangeLogMapper;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<Long> userIds, List<UserChangeLog> changes) {
+        if (userIds.isEmpty() || changes.isEmpty()) {
+            return;
+        }
+        // 去重并排序，多个事务按相同顺序锁定序号行，避免死锁
+        List<Long> sorted = new ArrayList<>(new TreeSet<>(userIds));
+        int count = changes.size();
+        int userBatch = Math.max(1, Math.min(USER_BATCH, LOG_BATCH / count));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < sorted.size(); i += userBatch) {
+            List<Long> batch = sorted.subList(i, Math.min(sorted.size(), i + userBatch));
+            userChangeLogMapper.incrementSeq(batch, count);
+            List<UserChangeLog> logs = new ArrayList<>(batch.size() * count);
+            for (Map<String, Object> row : userChangeLogMapper.selectSeqForUpdate(batch)) {
+                long userId = ((Number) row.get("userId")).longValue();
+                // 本次分配的序号为 (seq - count, seq]
+                long seq = ((Number) row.get("seq")).longValue() - count;
+                for (UserChangeLog change : changes) {
+                    logs.add(new UserChangeLog(userId, ++seq, change.getTableName(),
+                            change.getRefId(), change.getSubId(), now));
+                }
+            }
+            userChangeLogMapper.batchInsert(logs);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Collection<Long> userIds, UserChangeLog change) {
+        record(userIds, List.of(change));
+    }
+
+    @Override
+    public long currentSeq(Long userId) {
+        Long seq = userChangeLogMapper.selectSeq(userId);
+        return seq == null ? 0 : seq;
+    }
+
+    @Override
+    public List<UserChangeLog> since(Long userId, long seq, int limit) {
+        return userChangeLogMapper.selectSince(userId, seq, limit);
+    }
+}
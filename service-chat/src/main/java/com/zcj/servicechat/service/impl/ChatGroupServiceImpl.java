@@ -6,21 +6,22 @@ import com.zcj.common.dto.CreateGroupDTO;
 import com.zcj.common.entity.ChatSession;
 import com.zcj.common.entity.ChatGroup;
 import com.zcj.common.entity.GroupMember;
-import com.zcj.common.feign.NettyFeignClient;
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.common.utils.ResponseCacheInvalidator;
 import com.zcj.common.utils.SnowflakeIdGenerator;
+import com.zcj.common.utils.SyncNotifier;
 import com.zcj.servicechat.mapper.ChatSessionMapper;
 import com.zcj.servicechat.mapper.GroupMapper;
 import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.ChangeLogService;
 import com.zcj.servicechat.service.ChatGroupService;
+import com.zcj.servicechat.service.GroupMemberService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 @Service
 @AllArgsConstructor
@@ -28,8 +29,12 @@ public class ChatGroupServiceImpl implements ChatGroupService {
     final GroupMapper groupMapper;
     final GroupMemberMapper groupMemberMapper;
     final SnowflakeIdGenerator idGenerator;
-    final NettyFeignClient nettyFeignClient;
+    final SyncNotifier syncNotifier;
     final ChatSessionMapper chatSessionMapper;
+    final ResponseCacheInvalidator responseCacheInvalidator;
+    final ChangeLogService changeLogService;
+    final GroupMembershipCache groupMembershipCache;
+    final GroupMemberService groupMemberService;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -42,11 +47,16 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         group.setCreatedAt(now);
         group.setUpdatedAt(now);
         group.setCreateUser(userId);
-        int number = dto.getUserIds().size()+1;
+        // 去重并排除群主自己，避免批量写入时覆盖群主角色
+        Set<Long> userIds = new LinkedHashSet<>(dto.getUserIds());
+        userIds.remove(userId);
+        int number = userIds.size()+1;
         group.setNumber(number);
         group.setStatus(ChatGroup.GROUP_NORMAL);
         groupMapper.insert(group);
 
+        // 群主与成员一次批量写入
+        List<GroupMember> members = new ArrayList<>(number);
         GroupMember groupMember = new GroupMember();
         groupMember.setGroupId(group.getId());
         groupMember.setUserId(userId);
@@ -54,9 +64,9 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         groupMember.setRole(GroupMember.GROUP_MEMBER_ROLE_OWNER);
         groupMember.setCreatedAt(now);
         groupMember.setUpdatedAt(now);
-        groupMemberMapper.insert(groupMember);
+        members.add(groupMember);
 
-        for (Long id : dto.getUserIds()) {
+        for (Long id : userIds) {
             GroupMember member = new GroupMember();
             member.setGroupId(group.getId());
             member.setUserId(id);
@@ -64,8 +74,9 @@ public class ChatGroupServiceImpl implements ChatGroupService {
             member.setRole(GroupMember.GROUP_MEMBER_ROLE_NORMAL);
             member.setCreatedAt(now);
             member.setUpdatedAt(now);
-            groupMemberMapper.insert(member);
+            members.add(member);
         }
+        groupMemberService.upsertBatch(members);
 
         // 为群聊创建会话
         ChatSession chatSession = new ChatSession();
@@ -77,17 +88,14 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         chatSession.setStatus(ChatSession.STATUS_NORMAL);
         chatSessionMapper.insert(chatSession);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.sync(userId, "chat_session");
-                nettyFeignClient.sync(userId, "chat_group");
-                nettyFeignClient.sync(userId, "group_member");
-                nettyFeignClient.syncBatch(dto.getUserIds(), "chat_session");
-                nettyFeignClient.syncBatch(dto.getUserIds(), "chat_group");
-                nettyFeignClient.syncBatch(dto.getUserIds(), "group_member");
-            }
-        });
+        // 所有成员的变更日志：群组、会话与完整成员列表
+        List<Long> memberIds = new ArrayList<>(userIds);
+        memberIds.add(userId);
+        changeLogService.record(memberIds, List.of(UserChangeLog.group(group.getId()),
+                UserChangeLog.session(chatSession.getId()), UserChangeLog.allMembers(group.getId())));
+        groupMembershipCache.added(group.getId(), memberIds);
+
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_SESSION, SyncNotifier.CHAT_GROUP, SyncNotifier.GROUP_MEMBER);
         return group;
     }
 
@@ -103,6 +111,9 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         // 删除群组
         group.setStatus(ChatGroup.GROUP_DELETED);
         groupMapper.updateById(group);
+        // 解散前的全体成员（锁定群聊行之后从数据库当前读）
+        List<Long> memberIds = groupMemberMapper.selectMemberIdsForShare(groupId);
+        responseCacheInvalidator.invalidateGroup(groupId);
 
         // 删除群成员
         GroupMember groupMember = new GroupMember();
@@ -116,17 +127,11 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         cs.setStatus(ChatSession.STATUS_DELETED);
         chatSessionMapper.updateById(cs);
 
-        List<Long> memberIds = groupMemberMapper.selectList(new LambdaQueryWrapper<GroupMember>()
-                .eq(GroupMember::getGroupId, groupId)).stream().map(GroupMember::getUserId).toList();
-
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.syncBatch(memberIds, "chat_session");
-                nettyFeignClient.syncBatch(memberIds, "chat_group");
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-            }
-        });
+        changeLogService.record(memberIds, List.of(UserChangeLog.group(groupId),
+                UserChangeLog.session(cs.getId()), UserChangeLog.allMembers(groupId)));
+        groupMembershipCache.cleared(groupId);
+
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_SESSION, SyncNotifier.CHAT_GROUP, SyncNotifier.GROUP_MEMBER);
     }
 
     @Override
@@ -143,17 +148,13 @@ public class ChatGroupServiceImpl implements ChatGroupService {
         }
         group.setUpdatedAt(System.currentTimeMillis());
         groupMapper.updateById(group);
+        responseCacheInvalidator.invalidateGroup(group.getId());
 
-        List<Long> memberIds = groupMemberMapper.selectList(
-                new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, group.getId()))
-                .stream().map(GroupMember::getUserId).toList();
+        // 锁定群聊行之后从数据库当前读
+        List<Long> memberIds = groupMemberMapper.selectMemberIdsForShare(group.getId());
+        changeLogService.record(memberIds, UserChangeLog.group(group.getId()));
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.syncBatch(memberIds, "chat_group");
-            }
-        });
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_GROUP);
 
         return group;
     }
@@ -174,12 +175,17 @@ public class ChatGroupServiceImpl implements ChatGroupService {
                 .stream()
                 .map((obj)-> (long)obj)
                 .toList();
-        LambdaQueryWrapper<ChatGroup> groupQueryWrapper = new LambdaQueryWrapper<>();
-        if (!groupIds.isEmpty()) {
-            groupQueryWrapper.in(ChatGroup::getId, groupIds);
-            groupQueryWrapper.gt(ChatGroup::getUpdatedAt, lastUpdateAt);
-            return groupMapper.selectList(groupQueryWrapper);
+        return syncByGroupIds(groupIds, lastUpdateAt);
+    }
+
+    @Override
+    public List<ChatGroup> syncByGroupIds(List<Long> groupIds, long lastUpdateAt) {
+        if (groupIds.isEmpty()) {
+            return Collections.emptyList();
         }
-        return Collections.emptyList();
+        LambdaQueryWrapper<ChatGroup> groupQueryWrapper = new LambdaQueryWrapper<>();
+        groupQueryWrapper.in(ChatGroup::getId, groupIds);
+        groupQueryWrapper.gt(ChatGroup::getUpdatedAt, lastUpdateAt);
+        return groupMapper.selectList(groupQueryWrapper);
     }
 }
@@ -1,22 +1,32 @@
 package com.zcj.servicechat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.zcj.common.context.UserContext;
 import com.zcj.common.entity.ChatMessage;
 import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.common.vo.MessageSyncVO;
 import com.zcj.servicechat.mapper.ChatMessageMapper;
 import com.zcj.servicechat.service.ChatMessageService;
+import com.zcj.servicechat.service.SyncExecutor;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 @Service
 @AllArgsConstructor
 public class ChatMessageServiceImpl implements ChatMessageService {
 
+    // 每条SQL包含的会话数
+    private static final int SYNC_SESSION_BATCH = 100;
+    // 每个会话单次最多同步的消息数
+    public static final int SYNC_SESSION_LIMIT = 500;
+
     final ChatMessageMapper chatMessageMapper;
+    final SyncExecutor syncExecutor;
 
     @Override
     public List<ChatMessage> info(Long sessionId, List<Long> messageIds) {
@@ -35,16 +45,48 @@ public class ChatMessageServiceImpl implements ChatMessageService {
     }
 
     @Override
-    public List<ChatMessage> syncBatch(List<ChatMessageSyncDTO> list) {
-        Long id = UserContext.getId();
+    public MessageSyncVO syncBatch(List<ChatMessageSyncDTO> list) {
         if (list.isEmpty()) {
-            return Collections.emptyList();
+            return new MessageSyncVO();
         }
+        // 同一会话只保留最小的lastMessageId，并按会话ID排序
+        TreeMap<Long, Long> sessions = new TreeMap<>();
         for (ChatMessageSyncDTO vo : list) {
-            if (vo.getLastMessageId() == null) {
-                vo.setLastMessageId(-1L);
+            Long lastMessageId = vo.getLastMessageId() == null ? -1L : vo.getLastMessageId();
+            sessions.merge(vo.getSessionId(), lastMessageId, Math::min);
+        }
+        List<ChatMessageSyncDTO> sorted = new ArrayList<>(sessions.size());
+        sessions.forEach((sessionId, lastMessageId) -> sorted.add(new ChatMessageSyncDTO(sessionId, lastMessageId)));
+
+        // 各批次互不依赖，并发查询；每个会话多查一条，用于判断是否被截断
+        List<Callable<List<ChatMessage>>> tasks = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += SYNC_SESSION_BATCH) {
+            List<ChatMessageSyncDTO> batch = sorted.subList(i, Math.min(sorted.size(), i + SYNC_SESSION_BATCH));
+            tasks.add(() -> chatMessageMapper.selectBatchBySessionAndLastId(batch, SYNC_SESSION_LIMIT + 1));
+        }
+        List<ChatMessage> result = new ArrayList<>();
+        for (List<ChatMessage> messages : syncExecutor.invokeAll(tasks)) {
+            result.addAll(messages);
+        }
+        // SQL 不保证 UNION ALL 各分支的先后顺序，在内存中按主键排序（各分支内已有序，接近线性）
+        result.sort(Comparator.comparing(ChatMessage::getSessionId).thenComparing(ChatMessage::getMessageId));
+
+        // 去掉每个会话超出上限的那一条，并记录被截断的会话
+        List<ChatMessage> messages = new ArrayList<>(result.size());
+        List<Long> truncatedSessionIds = new ArrayList<>();
+        Long currentSessionId = null;
+        int count = 0;
+        for (ChatMessage message : result) {
+            if (!message.getSessionId().equals(currentSessionId)) {
+                currentSessionId = message.getSessionId();
+                count = 0;
+            }
+            if (++count <= SYNC_SESSION_LIMIT) {
+                messages.add(message);
+            } else if (count == SYNC_SESSION_LIMIT + 1) {
+                truncatedSessionIds.add(currentSessionId);
             }
         }
-        return chatMessageMapper.selectBatchBySessionAndLastId(list);
+        return new MessageSyncVO(messages, truncatedSessionIds);
     }
 }
@@ -3,17 +3,18 @@ package com.zcj.servicechat.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.zcj.common.entity.ChatSession;
 import com.zcj.common.entity.GroupMember;
-import com.zcj.common.feign.NettyFeignClient;
+import com.zcj.common.entity.UserChangeLog;
 import com.zcj.common.utils.SnowflakeIdGenerator;
+import com.zcj.common.utils.SyncNotifier;
 import com.zcj.servicechat.mapper.ChatMessageMapper;
 import com.zcj.servicechat.mapper.ChatSessionMapper;
 import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.ChangeLogService;
 import com.zcj.servicechat.service.ChatSessionService;
+import com.zcj.servicechat.service.SyncExecutor;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,19 +26,15 @@ public class ChatSessionServiceImpl implements ChatSessionService {
     final ChatSessionMapper chatSessionMapper;
     final SnowflakeIdGenerator snowflakeIdGenerator;
     final GroupMemberMapper groupMemberMapper;
-    final NettyFeignClient nettyFeignClient;
+    final SyncNotifier syncNotifier;
     private final ChatMessageMapper chatMessageMapper;
+    private final SyncExecutor syncExecutor;
+    private final ChangeLogService changeLogService;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public ChatSession addSingleSession(Long firstId, Long secondId) {
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.sync(firstId, "chat_session");
-                nettyFeignClient.sync(secondId, "chat_session");
-            }
-        });
+        syncNotifier.notify(List.of(firstId, secondId), SyncNotifier.CHAT_SESSION);
 
         LambdaQueryWrapper<ChatSession> queryWrapper = new LambdaQueryWrapper<>();
         // 1. 类型为单聊
@@ -66,6 +63,7 @@ public class ChatSessionServiceImpl implements ChatSessionService {
         chatSession.setCreatedAt(nowTimeMills);
         chatSession.setUpdatedAt(nowTimeMills);
         chatSessionMapper.insert(chatSession);
+        changeLogService.record(List.of(firstId, secondId), UserChangeLog.session(chatSession.getId()));
         return chatSession;
     }
 
@@ -92,13 +90,9 @@ public class ChatSessionServiceImpl implements ChatSessionService {
         chatSession.setCreatedAt(nowTimeMills);
         chatSession.setUpdatedAt(nowTimeMills);
         chatSessionMapper.insert(chatSession);
+        changeLogService.record(List.of(ownerId), UserChangeLog.session(chatSession.getId()));
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.sync(ownerId, "chat_session");
-            }
-        });
+        syncNotifier.notify(ownerId, SyncNotifier.CHAT_SESSION);
         return chatSession;
     }
 
@@ -134,6 +128,11 @@ public class ChatSessionServiceImpl implements ChatSessionService {
         groupQueryWrapper.select(GroupMember::getGroupId);
         List<Long> groupIds = groupMemberMapper.selectObjs(groupQueryWrapper)
                 .stream().map((o) -> (long) o).toList();
+        return syncGroupChatSessionByGroupIds(groupIds, lastUpdateAt);
+    }
+
+    @Override
+    public List<ChatSession> syncGroupChatSessionByGroupIds(List<Long> groupIds, Long lastUpdateAt) {
         if (groupIds.isEmpty()) {
             return new ArrayList<>();
         }
@@ -148,4 +147,14 @@ public class ChatSessionServiceImpl implements ChatSessionService {
         return chatSessionMapper.selectList(queryWrapper);
     }
 
+    @Override
+    public List<ChatSession> syncChatSession(Long userId, Long lastUpdateAt) {
+        List<List<ChatSession>> results = syncExecutor.invokeAll(List.of(
+                () -> syncSingleChatSession(userId, lastUpdateAt),
+                () -> syncGroupChatSession(userId, lastUpdateAt)));
+        List<ChatSession> sessions = new ArrayList<>(results.get(0));
+        sessions.addAll(results.get(1));
+        return sessions;
+    }
+
 }
@@ -0,0 +1,187 @@
+package com.zcj.servicechat.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.common.dto.DeltaSyncDTO;
+import com.zcj.common.entity.*;
+import com.zcj.common.feign.UserServiceFeignClient;
+import com.zcj.common.vo.DeltaSyncVO;
+import com.zcj.common.vo.MessageSyncVO;
+import com.zcj.common.vo.Result;
+import com.zcj.servicechat.mapper.ChatSessionMapper;
+import com.zcj.servicechat.mapper.GroupMapper;
+import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.*;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.ToLongFunction;
+
+@Slf4j
+@Service
+@AllArgsConstructor
+public class DeltaSyncServiceImpl implements DeltaSyncService {
+
+    // 版本向量的键（与同步通知中的表名一致）
+    public static final String CHAT_SESSION = "chat_session";
+    public static final String CHAT_GROUP = "chat_group";
+    public static final String GROUP_MEMBER = "group_member";
+    public static final String USER_FRIEND = "user_friend";
+    public static final String FRIEND_REQUEST = "friend_request";
+    // 变更日志序号，带上该键时会话、群组、群成员按变更日志同步
+    public static final String CHANGE_SEQ = "change_seq";
+    // 单次读取的变更日志条数
+    static final int CHANGE_LIMIT = 1000;
+
+    final GroupMemberMapper groupMemberMapper;
+    final ChatSessionMapper chatSessionMapper;
+    final GroupMapper groupMapper;
+    final ChangeLogService changeLogService;
+    final ChatSessionService chatSessionService;
+    final ChatGroupService chatGroupService;
+    final GroupMemberService groupMemberService;
+    final ChatMessageService chatMessageService;
+    final UserServiceFeignClient userServiceFeignClient;
+    final SyncExecutor syncExecutor;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DeltaSyncVO sync(Long userId, DeltaSyncDTO dto) {
+        Map<String, Long> versions = new HashMap<>();
+        if (dto.getVersions() != null) {
+            // 忽略值为空的版本，视为未同步过
+            dto.getVersions().forEach((key, value) -> {
+                if (key != null && value != null) versions.put(key, value);
+            });
+        }
+        long sessionAt = versions.getOrDefault(CHAT_SESSION, 0L);
+        long groupAt = versions.getOrDefault(CHAT_GROUP, 0L);
+        long memberAt = versions.getOrDefault(GROUP_MEMBER, 0L);
+        Long friendAt = versions.get(USER_FRIEND);
+        Long requestAt = versions.get(FRIEND_REQUEST);
+        Long changeSeq = versions.get(CHANGE_SEQ);
+        List<ChatMessageSyncDTO> messages = dto.getMessages() == null ? Collections.emptyList() : dto.getMessages();
+
+        DeltaSyncVO vo = new DeltaSyncVO();
+        Map<String, Long> newVersions = new HashMap<>(versions);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        if (changeSeq != null) {
+            // 会话、群组、群成员按变更日志同步，耗时只与变更数量有关
+            syncFromChangeLog(userId, changeSeq, vo, newVersions);
+        } else {
+            // 首次同步：先记下当前序号再按更新时间查询，期间的变更下次会重复返回但不会遗漏
+            newVersions.put(CHANGE_SEQ, changeLogService.currentSeq(userId));
+
+            // 用户所在的群组（含已退出的，用于同步退群状态），一次查询同时取出成员状态
+            LambdaQueryWrapper<GroupMember> groupQueryWrapper = new LambdaQueryWrapper<>();
+            groupQueryWrapper.eq(GroupMember::getUserId, userId);
+            groupQueryWrapper.select(GroupMember::getGroupId, GroupMember::getStatus);
+            List<GroupMember> memberships = groupMemberMapper.selectList(groupQueryWrapper);
+            List<Long> groupIds = memberships.stream()
+                    .map(GroupMember::getGroupId).distinct().toList();
+            // 群聊会话只同步未退出的群
+            List<Long> activeGroupIds = memberships.stream()
+                    .filter(m -> !Objects.equals(m.getStatus(), GroupMember.GROUP_MEMBER_STATUS_DELETED))
+                    .map(GroupMember::getGroupId).distinct().toList();
+
+            tasks.add(() -> chatSessionService.syncSingleChatSession(userId, sessionAt));
+            tasks.add(() -> chatSessionService.syncGroupChatSessionByGroupIds(activeGroupIds, sessionAt));
+            tasks.add(() -> chatGroupService.syncByGroupIds(groupIds, groupAt));
+            tasks.add(() -> groupMemberService.syncByGroupIds(groupIds, memberAt));
+        }
+        tasks.add(() -> unwrap(userServiceFeignClient.syncUserFriend(userId, friendAt)));
+        tasks.add(() -> unwrap(userServiceFeignClient.syncRequest(userId, requestAt)));
+        tasks.add(() -> chatMessageService.syncBatch(messages));
+        List<Object> results = syncExecutor.invokeAll(tasks);
+
+        int index = 0;
+        if (changeSeq == null) {
+            List<ChatSession> chatSessions = new ArrayList<>((List<ChatSession>) results.get(index++));
+            chatSessions.addAll((List<ChatSession>) results.get(index++));
+            vo.setChatSessions(chatSessions);
+            vo.setChatGroups((List<ChatGroup>) results.get(index++));
+            vo.setGroupMembers((List<GroupMember>) results.get(index++));
+        }
+        vo.setUserFriends((List<UserFriend>) results.get(index++));
+        vo.setFriendRequests((List<FriendRequest>) results.get(index++));
+        MessageSyncVO messageSync = (MessageSyncVO) results.get(index);
+        vo.setMessages(messageSync.getMessages());
+        vo.setTruncatedSessionIds(messageSync.getTruncatedSessionIds());
+
+        // 新版本为本次结果中最大的更新时间，没有变化时保持原值
+        advance(newVersions, CHAT_SESSION, vo.getChatSessions(), ChatSession::getUpdatedAt);
+        advance(newVersions, CHAT_GROUP, vo.getChatGroups(), ChatGroup::getUpdatedAt);
+        advance(newVersions, GROUP_MEMBER, vo.getGroupMembers(), GroupMember::getUpdatedAt);
+        advance(newVersions, USER_FRIEND, vo.getUserFriends(), UserFriend::getUpdatedAt);
+        advance(newVersions, FRIEND_REQUEST, vo.getFriendRequests(), FriendRequest::getUpdatedAt);
+        vo.setVersions(newVersions);
+        return vo;
+    }
+
+    /**
+     * 读取序号之后的变更日志，合并后按ID查询变更的会话、群组与群成员
+     */
+    private void syncFromChangeLog(Long userId, long changeSeq, DeltaSyncVO vo, Map<String, Long> newVersions) {
+        List<UserChangeLog> changes = changeLogService.since(userId, changeSeq, CHANGE_LIMIT);
+        Set<Long> sessionIds = new LinkedHashSet<>();
+        Set<Long> groupIds = new LinkedHashSet<>();
+        // 需要完整成员列表的群
+        Set<Long> allMemberGroupIds = new LinkedHashSet<>();
+        // 群ID -> 变更的成员ID
+        Map<Long, Set<Long>> memberIds = new LinkedHashMap<>();
+        for (UserChangeLog change : changes) {
+            switch (change.getTableName()) {
+                case UserChangeLog.TABLE_CHAT_SESSION -> sessionIds.add(change.getRefId());
+                case UserChangeLog.TABLE_CHAT_GROUP -> groupIds.add(change.getRefId());
+                case UserChangeLog.TABLE_GROUP_MEMBER -> {
+                    if (change.getSubId() == null) {
+                        allMemberGroupIds.add(change.getRefId());
+                    } else {
+                        memberIds.computeIfAbsent(change.getRefId(), k -> new LinkedHashSet<>()).add(change.getSubId());
+                    }
+                }
+                default -> log.warn("未知的变更类型: {}", change.getTableName());
+            }
+        }
+        // 完整成员列表已包含单个成员的变更
+        memberIds.keySet().removeAll(allMemberGroupIds);
+
+        vo.setChatSessions(sessionIds.isEmpty() ? Collections.emptyList() : chatSessionMapper.selectBatchIds(sessionIds));
+        vo.setChatGroups(groupIds.isEmpty() ? Collections.emptyList() : groupMapper.selectBatchIds(groupIds));
+        List<GroupMember> groupMembers = new ArrayList<>();
+        if (!allMemberGroupIds.isEmpty()) {
+            groupMembers.addAll(groupMemberMapper.selectList(new LambdaQueryWrapper<GroupMember>()
+                    .in(GroupMember::getGroupId, allMemberGroupIds)));
+        }
+        if (!memberIds.isEmpty()) {
+            // 按主键 (group_id, user_id) 查询
+            LambdaQueryWrapper<GroupMember> memberQueryWrapper = new LambdaQueryWrapper<>();
+            memberIds.forEach((groupId, ids) -> memberQueryWrapper.or(wrapper -> wrapper
+                    .eq(GroupMember::getGroupId, groupId)
+                    .in(GroupMember::getUserId, ids)));
+            groupMembers.addAll(groupMemberMapper.selectList(memberQueryWrapper));
+        }
+        vo.setGroupMembers(groupMembers);
+
+        newVersions.put(CHANGE_SEQ, changes.isEmpty() ? changeSeq : changes.get(changes.size() - 1).getSeq());
+        vo.setHasMore(changes.size() == CHANGE_LIMIT);
+    }
+
+    private static <T> List<T> unwrap(Result<List<T>> result) {
+        if (result == null || !Result.SUCCESS.equals(result.getCode())) {
+            throw new RuntimeException("用户服务同步失败: " + (result == null ? null : result.getMsg()));
+        }
+        return result.getData() == null ? Collections.emptyList() : result.getData();
+    }
+
+    private static <T> void advance(Map<String, Long> versions, String key, List<T> rows, ToLongFunction<T> updatedAt) {
+        long max = versions.getOrDefault(key, 0L);
+        for (T row : rows) {
+            max = Math.max(max, updatedAt.applyAsLong(row));
+        }
+        versions.put(key, max);
+    }
+}
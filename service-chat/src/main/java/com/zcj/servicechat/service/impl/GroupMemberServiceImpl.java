@@ -1,32 +1,42 @@
 package com.zcj.servicechat.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.zcj.common.context.UserContext;
-import com.zcj.common.entity.ChatGroup;
+import com.zcj.common.entity.ChatSession;
 import com.zcj.common.entity.GroupMember;
-import com.zcj.common.feign.NettyFeignClient;
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.common.utils.ResponseCacheInvalidator;
+import com.zcj.common.utils.SyncNotifier;
+import com.zcj.servicechat.mapper.ChatSessionMapper;
 import com.zcj.servicechat.mapper.GroupMapper;
 import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.ChangeLogService;
 import com.zcj.servicechat.service.GroupMemberService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class GroupMemberServiceImpl implements GroupMemberService {
 
+    // 单条SQL包含的成员数
+    private static final int MEMBER_BATCH = 500;
+    // 一次加入的成员超过该数量时，原有成员只记录一条完整成员列表的变更，避免变更日志按 成员数 × 加入人数 增长
+    static final int MEMBER_CHANGE_LIMIT = 8;
+
     final GroupMemberMapper groupMemberMapper;
-    final NettyFeignClient nettyFeignClient;
+    final SyncNotifier syncNotifier;
     final GroupMapper groupMapper;
+    final ResponseCacheInvalidator responseCacheInvalidator;
+    final ChatSessionMapper chatSessionMapper;
+    final ChangeLogService changeLogService;
+    final GroupMembershipCache groupMembershipCache;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -41,7 +51,6 @@ public class GroupMemberServiceImpl implements GroupMemberService {
         } else if (opMember.getRole() == GroupMember.GROUP_MEMBER_ROLE_NORMAL) {
             throw new RuntimeException("您没有权限，无法添加成员");
         }
-
         queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(GroupMember::getGroupId, groupId);
         queryWrapper.eq(GroupMember::getUserId, userId);
@@ -57,6 +66,9 @@ public class GroupMemberServiceImpl implements GroupMemberService {
         } else {
             groupMember = new GroupMember();
         }
+        updateNumber(groupId, 1);
+        // 加入前的成员（锁定群聊行之后读取，并发入群的成员不会遗漏）
+        List<Long> oldMemberIds = memberIdsOf(groupId);
 
         groupMember.setGroupId(groupId);
         groupMember.setUserId(userId);
@@ -72,33 +84,11 @@ public class GroupMemberServiceImpl implements GroupMemberService {
             groupMemberMapper.insert(groupMember);
         }
 
-        while (true) {
-            ChatGroup oldGroup = groupMapper.selectById(groupId);
-            ChatGroup newGroup = new ChatGroup();
-            newGroup.setNumber(oldGroup.getNumber()+1);
-            newGroup.setUpdatedAt(System.currentTimeMillis());
-            LambdaUpdateWrapper<ChatGroup> updateWrapper = new LambdaUpdateWrapper<>();
-            updateWrapper.eq(ChatGroup::getId, oldGroup.getId());
-            updateWrapper.set(ChatGroup::getUpdatedAt, oldGroup.getUpdatedAt());
-            int updated = groupMapper.update(newGroup, updateWrapper);
-            if (updated > 0) {
-                break;
-            }
-        }
+        List<Long> memberIds = recordJoined(groupId, oldMemberIds, List.of(userId));
+        responseCacheInvalidator.invalidateGroup(groupId);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.sync(userId, "chat_group");
-                nettyFeignClient.sync(userId, "group_member");
-                nettyFeignClient.sync(userId, "chat_session");
-                List<Long> memberIds = groupMemberMapper.selectList(
-                                new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, groupId))
-                        .stream().map(GroupMember::getUserId).toList();
-                nettyFeignClient.syncBatch(memberIds, "chat_group");
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-            }
-        });
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_GROUP, SyncNotifier.GROUP_MEMBER);
+        syncNotifier.notify(userId, SyncNotifier.CHAT_SESSION);
 
         return groupMember;
     }
@@ -118,10 +108,9 @@ public class GroupMemberServiceImpl implements GroupMemberService {
                 throw new RuntimeException("您没有权限，无法删除成员");
             }
         }
-        // 查找全体成员
-        List<Long> memberIds = groupMemberMapper.selectList(
-                        new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, groupId))
-                .stream().map(GroupMember::getUserId).toList();
+        updateNumber(groupId, -1);
+        // 退群前的全体成员
+        List<Long> memberIds = memberIdsOf(groupId);
 
         LambdaQueryWrapper<GroupMember> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(GroupMember::getGroupId, groupId);
@@ -130,27 +119,11 @@ public class GroupMemberServiceImpl implements GroupMemberService {
         updateGroupMember.setStatus(GroupMember.GROUP_MEMBER_STATUS_DELETED);
         groupMemberMapper.update(updateGroupMember, queryWrapper);
 
-        while (true) {
-            ChatGroup oldGroup = groupMapper.selectById(groupId);
-            ChatGroup newGroup = new ChatGroup();
-            newGroup.setNumber(oldGroup.getNumber()-1);
-            newGroup.setUpdatedAt(System.currentTimeMillis());
-            LambdaUpdateWrapper<ChatGroup> updateWrapper = new LambdaUpdateWrapper<>();
-            updateWrapper.eq(ChatGroup::getId, oldGroup.getId());
-            updateWrapper.set(ChatGroup::getUpdatedAt, oldGroup.getUpdatedAt());
-            int updated = groupMapper.update(newGroup, updateWrapper);
-            if (updated > 0) {
-                break;
-            }
-        }
+        changeLogService.record(memberIds, List.of(UserChangeLog.group(groupId), UserChangeLog.member(groupId, userId)));
+        groupMembershipCache.removed(groupId, List.of(userId));
+        responseCacheInvalidator.invalidateGroup(groupId);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-            }
-        });
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_GROUP, SyncNotifier.GROUP_MEMBER);
     }
 
     @Override
@@ -175,6 +148,14 @@ public class GroupMemberServiceImpl implements GroupMemberService {
                 .collect(Collectors.toList());
 
         // 3. 查询这些群组中更新时间在lastUpdateAt之后的成员
+        return syncByGroupIds(groupIds, lastUpdateAt);
+    }
+
+    @Override
+    public List<GroupMember> syncByGroupIds(List<Long> groupIds, Long lastUpdateAt) {
+        if (groupIds.isEmpty()) {
+            return Collections.emptyList();
+        }
         LambdaQueryWrapper<GroupMember> memberQuery = new LambdaQueryWrapper<>();
         memberQuery.in(GroupMember::getGroupId, groupIds)
                 .gt(GroupMember::getUpdatedAt, lastUpdateAt)
@@ -189,6 +170,10 @@ public class GroupMemberServiceImpl implements GroupMemberService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public GroupMember update(GroupMember groupMember) {
+        // 与增减成员的事务互斥，保证变更日志的接收者完整
+        if (groupMapper.lockForShare(groupMember.getGroupId()) == 0) {
+            throw new RuntimeException("该群聊不存在");
+        }
         LambdaQueryWrapper<GroupMember> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(GroupMember::getGroupId, groupMember.getGroupId());
         queryWrapper.eq(GroupMember::getUserId, groupMember.getUserId());
@@ -198,20 +183,16 @@ public class GroupMemberServiceImpl implements GroupMemberService {
         opMember.setUpdatedAt(time);
         groupMemberMapper.update(opMember, queryWrapper);
         groupMember.setUpdatedAt(time);
+        List<Long> memberIds = memberIdsOf(groupMember.getGroupId());
+        changeLogService.record(memberIds,
+                UserChangeLog.member(groupMember.getGroupId(), groupMember.getUserId()));
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                List<Long> memberIds = groupMemberMapper.selectList(
-                                new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, groupMember.getGroupId()))
-                        .stream().map(GroupMember::getUserId).toList();
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-            }
-        });
+        syncNotifier.notify(memberIds, SyncNotifier.GROUP_MEMBER);
         return groupMember;
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void addBatch(Long groupId, List<Long> userIds) {
         long opUserId = UserContext.getId();
         LambdaQueryWrapper<GroupMember> queryWrapper = new LambdaQueryWrapper<>();
@@ -223,68 +204,116 @@ public class GroupMemberServiceImpl implements GroupMemberService {
         } else if (opMember.getRole() == GroupMember.GROUP_MEMBER_ROLE_NORMAL) {
             throw new RuntimeException("您没有权限，无法添加成员");
         }
+        // 一次查询已在群中的用户（已退出的用户重新加入）
+        List<Long> candidates = new ArrayList<>(new LinkedHashSet<>(userIds));
+        Set<Long> existing = new HashSet<>();
+        for (int i = 0; i < candidates.size(); i += MEMBER_BATCH) {
+            groupMemberMapper.selectList(new LambdaQueryWrapper<GroupMember>()
+                            .eq(GroupMember::getGroupId, groupId)
+                            .in(GroupMember::getUserId, candidates.subList(i, Math.min(candidates.size(), i + MEMBER_BATCH)))
+                            .ne(GroupMember::getStatus, GroupMember.GROUP_MEMBER_STATUS_DELETED)
+                            .select(GroupMember::getUserId))
+                    .forEach(member -> existing.add(member.getUserId()));
+        }
 
-        int number = userIds.size();
-        Iterator<Long> iterator = userIds.iterator();
-        while (iterator.hasNext()) {
-            long userId = iterator.next();
-            queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(GroupMember::getGroupId, groupId);
-            queryWrapper.eq(GroupMember::getUserId, userId);
-
-            GroupMember groupMember = groupMemberMapper.selectOne(queryWrapper);
-            boolean isExist = false;
-
-            if (groupMember != null) {
-                isExist = true;
-                if (groupMember.getStatus() != GroupMember.GROUP_MEMBER_STATUS_DELETED) {
-                    number--;
-                    iterator.remove();
-                    continue;
-                }
-            } else {
-                groupMember = new GroupMember();
+        long now = System.currentTimeMillis();
+        List<Long> joinedIds = new ArrayList<>(candidates.size());
+        List<GroupMember> members = new ArrayList<>(candidates.size());
+        for (Long userId : candidates) {
+            if (existing.contains(userId)) {
+                continue;
             }
-
+            GroupMember groupMember = new GroupMember();
             groupMember.setGroupId(groupId);
             groupMember.setUserId(userId);
             groupMember.setRole(GroupMember.GROUP_MEMBER_ROLE_NORMAL);
             groupMember.setStatus(GroupMember.GROUP_MEMBER_STATUS_NORMAL);
-            long now = System.currentTimeMillis();
             groupMember.setUpdatedAt(now);
             groupMember.setCreatedAt(now);
+            members.add(groupMember);
+            joinedIds.add(userId);
+        }
+        updateNumber(groupId, joinedIds.size());
+        // 加入前的成员（锁定群聊行之后读取）
+        List<Long> oldMemberIds = memberIdsOf(groupId);
+        upsertBatch(members);
 
-            if (isExist) {
-                groupMemberMapper.update(groupMember, queryWrapper);
-            } else {
-                groupMemberMapper.insert(groupMember);
-            }
+        List<Long> memberIds = recordJoined(groupId, oldMemberIds, joinedIds);
+        responseCacheInvalidator.invalidateGroup(groupId);
+
+        syncNotifier.notify(memberIds, SyncNotifier.CHAT_GROUP, SyncNotifier.GROUP_MEMBER);
+        syncNotifier.notify(joinedIds, SyncNotifier.CHAT_SESSION);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void upsertBatch(List<GroupMember> members) {
+        // 按用户ID排序，并发事务以相同顺序锁定成员行，避免死锁
+        List<GroupMember> sorted = new ArrayList<>(members);
+        sorted.sort(Comparator.comparing(GroupMember::getUserId));
+        for (int i = 0; i < sorted.size(); i += MEMBER_BATCH) {
+            groupMemberMapper.upsertBatch(sorted.subList(i, Math.min(sorted.size(), i + MEMBER_BATCH)));
         }
+    }
 
-        //  自旋，增加数量
-        while (true) {
-            ChatGroup oldGroup = groupMapper.selectById(groupId);
-            ChatGroup newGroup = new ChatGroup();
-            newGroup.setNumber(oldGroup.getNumber()+number);
-            newGroup.setUpdatedAt(System.currentTimeMillis());
-            LambdaUpdateWrapper<ChatGroup> updateWrapper = new LambdaUpdateWrapper<>();
-            updateWrapper.eq(ChatGroup::getId, oldGroup.getId());
-            updateWrapper.set(ChatGroup::getUpdatedAt, oldGroup.getUpdatedAt());
-            int updated = groupMapper.update(newGroup, updateWrapper);
-            if (updated > 0) {
-                break;
-            }
+    /**
+     * 原子更新群成员数量
+     * 在写入群成员与变更日志之前调用：加锁顺序为 群聊行 -> 群成员行 -> 变更序号行，
+     * 与 ChatGroupServiceImpl 修改/解散群聊的顺序一致，避免并发时死锁
+     */
+    private void updateNumber(Long groupId, int delta) {
+        if (delta == 0) {
+            return;
         }
+        if (groupMapper.incrementNumber(groupId, delta, System.currentTimeMillis()) == 0) {
+            throw new RuntimeException("该群聊不存在");
+        }
+    }
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                List<Long> memberIds = groupMemberMapper.selectList(
-                                new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, groupId))
-                        .stream().map(GroupMember::getUserId).toList();
-                nettyFeignClient.syncBatch(memberIds, "group_member");
-                nettyFeignClient.syncBatch(memberIds, "chat_group");
+    /**
+     * 变更日志与通知的接收者：在 updateNumber 锁定群聊行之后从数据库当前读，
+     * 不使用可能滞后的群成员缓存，也不受事务快照影响
+     */
+    private List<Long> memberIdsOf(Long groupId) {
+        return groupMemberMapper.selectMemberIdsForShare(groupId);
+    }
+
+    /**
+     * 新成员入群的变更日志：原有成员收到群组与新成员的变更（加入人数较多时改为完整成员列表），
+     * 新成员收到群组、群聊会话与完整成员列表
+     * @return 入群后的全体成员
+     */
+    private List<Long> recordJoined(Long groupId, List<Long> oldMemberIds, List<Long> joinedIds) {
+        if (joinedIds.isEmpty()) {
+            return oldMemberIds;
+        }
+        groupMembershipCache.added(groupId, joinedIds);
+
+        List<UserChangeLog> changes = new ArrayList<>(Math.min(joinedIds.size(), MEMBER_CHANGE_LIMIT) + 1);
+        changes.add(UserChangeLog.group(groupId));
+        if (joinedIds.size() > MEMBER_CHANGE_LIMIT) {
+            changes.add(UserChangeLog.allMembers(groupId));
+        } else {
+            for (Long joinedId : joinedIds) {
+                changes.add(UserChangeLog.member(groupId, joinedId));
             }
-        });
+        }
+        changeLogService.record(oldMemberIds, changes);
+
+        ChatSession session = chatSessionMapper.selectOne(new LambdaQueryWrapper<ChatSession>()
+                .eq(ChatSession::getFirstId, groupId)
+                .eq(ChatSession::getType, ChatSession.TYPE_GROUP));
+        List<UserChangeLog> joinedChanges = new ArrayList<>(3);
+        joinedChanges.add(UserChangeLog.group(groupId));
+        if (session != null) {
+            joinedChanges.add(UserChangeLog.session(session.getId()));
+        }
+        joinedChanges.add(UserChangeLog.allMembers(groupId));
+        changeLogService.record(joinedIds, joinedChanges);
+
+        List<Long> memberIds = new ArrayList<>(oldMemberIds);
+        memberIds.addAll(joinedIds);
+        return memberIds;
     }
+
 }
@@ -0,0 +1,72 @@
+package com.zcj.servicechat;
+
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.servicechat.service.ChangeLogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 变更日志测试：一次调用为多个用户各自连续分配序号，按序号读取，事务外调用被拒绝
+ */
+@SpringBootTest
+class ChangeLogServiceTest {
+
+    private static final List<Long> USER_IDS = List.of(9_000_000_001_003L, 9_000_000_001_001L, 9_000_000_001_002L);
+
+    @Autowired
+    private ChangeLogService changeLogService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        for (Long userId : USER_IDS) {
+            jdbcTemplate.update("DELETE FROM user_change_log WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM user_change_seq WHERE user_id = ?", userId);
+        }
+    }
+
+    @Test
+    void testMonotonicSeqAcrossUsers() {
+        transactionTemplate.executeWithoutResult(status -> changeLogService.record(USER_IDS,
+                List.of(UserChangeLog.session(1), UserChangeLog.group(2))));
+        // 第二次只涉及部分用户
+        transactionTemplate.executeWithoutResult(status -> changeLogService.record(USER_IDS.subList(0, 2),
+                UserChangeLog.member(2, 3)));
+
+        for (int i = 0; i < USER_IDS.size(); i++) {
+            Long userId = USER_IDS.get(i);
+            long expected = i < 2 ? 3 : 2;
+            assertThat(changeLogService.currentSeq(userId)).isEqualTo(expected);
+            List<UserChangeLog> changes = changeLogService.since(userId, 0, 100);
+            assertThat(changes).extracting(UserChangeLog::getSeq)
+                    .containsExactly(expected == 3 ? new Long[]{1L, 2L, 3L} : new Long[]{1L, 2L});
+            assertThat(changes).extracting(UserChangeLog::getTableName).startsWith(
+                    UserChangeLog.TABLE_CHAT_SESSION, UserChangeLog.TABLE_CHAT_GROUP);
+            // 只返回序号之后的变更，并受条数限制
+            assertThat(changeLogService.since(userId, 1, 1)).extracting(UserChangeLog::getSeq).containsExactly(2L);
+            assertThat(changeLogService.since(userId, expected, 100)).isEmpty();
+        }
+    }
+
+    @Test
+    void testRecordOutsideTransactionRejected() {
+        assertThatThrownBy(() -> changeLogService.record(USER_IDS, UserChangeLog.session(1)))
+                .isInstanceOf(IllegalTransactionStateException.class);
+        assertThat(changeLogService.currentSeq(USER_IDS.get(0))).isZero();
+    }
+}
@@ -0,0 +1,48 @@
+package com.zcj.servicechat;
+
+import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.servicechat.mapper.ChatMessageMapper;
+import com.zcj.servicechat.service.impl.ChatMessageServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 批量增量同步的执行计划回归测试：每个会话分支都必须走主键范围扫描，且不产生文件排序
+ */
+@SpringBootTest
+class ChatMessageSyncPlanTest {
+
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Test
+    void testSyncBatchUsesPrimaryKeyRange() {
+        List<ChatMessageSyncDTO> list = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            list.add(new ChatMessageSyncDTO(i, i * 10));
+        }
+        List<Map<String, Object>> plan = chatMessageMapper.explainBatchBySessionAndLastId(
+                list, ChatMessageServiceImpl.SYNC_SESSION_LIMIT);
+
+        List<Map<String, Object>> branches = plan.stream()
+                .filter(row -> "chat_message".equals(row.get("table")))
+                .toList();
+        assertThat(branches).hasSize(list.size());
+        for (Map<String, Object> row : branches) {
+            assertThat(row.get("key")).as("分支未使用主键: %s", row).isEqualTo("PRIMARY");
+            assertThat(row.get("type")).as("分支不是范围扫描: %s", row).isEqualTo("range");
+        }
+        // 整个执行计划（包括合并结果的步骤）都不能出现文件排序
+        for (Map<String, Object> row : plan) {
+            assertThat(String.valueOf(row.get("Extra"))).as("出现文件排序: %s", row)
+                    .doesNotContain("filesort");
+        }
+    }
+}
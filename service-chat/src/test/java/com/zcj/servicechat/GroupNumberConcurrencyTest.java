@@ -0,0 +1,168 @@
+package com.zcj.servicechat;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.zcj.common.context.UserContext;
+import com.zcj.common.entity.ChatGroup;
+import com.zcj.common.entity.ChatSession;
+import com.zcj.common.entity.GroupMember;
+import com.zcj.servicechat.mapper.ChatSessionMapper;
+import com.zcj.servicechat.mapper.GroupMapper;
+import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.ChatGroupService;
+import com.zcj.servicechat.service.GroupMemberService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 群成员数量并发更新测试：100 个用户同时通过 GroupMemberService 加入同一个群聊，
+ * 期间穿插修改群信息，之后一半成员同时退群；不应出现死锁或计数丢失
+ */
+@SpringBootTest
+class GroupNumberConcurrencyTest {
+
+    private static final int JOINS = 100;
+    private static final int LEAVES = 50;
+    private static final int GROUP_EDITS = 20;
+    private static final long GROUP_ID = 9_000_000_000_001L;
+    private static final long SESSION_ID = 9_000_000_000_002L;
+    private static final long OWNER_ID = 9_000_000_000_099L;
+    private static final long FIRST_USER_ID = 9_000_000_000_100L;
+
+    @Autowired
+    private GroupMemberService groupMemberService;
+    @Autowired
+    private ChatGroupService chatGroupService;
+    @Autowired
+    private GroupMapper groupMapper;
+    @Autowired
+    private GroupMemberMapper groupMemberMapper;
+    @Autowired
+    private ChatSessionMapper chatSessionMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        long now = System.currentTimeMillis();
+        ChatGroup group = new ChatGroup();
+        group.setId(GROUP_ID);
+        group.setName("concurrency-test");
+        group.setCreateUser(OWNER_ID);
+        group.setNumber(1);
+        group.setStatus(ChatGroup.GROUP_NORMAL);
+        group.setCreatedAt(now);
+        group.setUpdatedAt(now);
+        groupMapper.insert(group);
+
+        GroupMember owner = new GroupMember();
+        owner.setGroupId(GROUP_ID);
+        owner.setUserId(OWNER_ID);
+        owner.setStatus(GroupMember.GROUP_MEMBER_STATUS_NORMAL);
+        owner.setRole(GroupMember.GROUP_MEMBER_ROLE_OWNER);
+        owner.setCreatedAt(now);
+        owner.setUpdatedAt(now);
+        groupMemberMapper.insert(owner);
+
+        ChatSession session = new ChatSession();
+        session.setId(SESSION_ID);
+        session.setType(ChatSession.TYPE_GROUP);
+        session.setFirstId(GROUP_ID);
+        session.setStatus(ChatSession.STATUS_NORMAL);
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        chatSessionMapper.insert(session);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        groupMemberMapper.delete(new LambdaQueryWrapper<GroupMember>().eq(GroupMember::getGroupId, GROUP_ID));
+        groupMapper.deleteById(GROUP_ID);
+        chatSessionMapper.deleteById(SESSION_ID);
+        jdbcTemplate.update("DELETE FROM user_change_log WHERE user_id BETWEEN ? AND ?",
+                OWNER_ID, FIRST_USER_ID + JOINS);
+        jdbcTemplate.update("DELETE FROM user_change_seq WHERE user_id BETWEEN ? AND ?",
+                OWNER_ID, FIRST_USER_ID + JOINS);
+    }
+
+    @Test
+    void testConcurrentJoinsAndLeaves() throws Exception {
+        List<Callable<Void>> joins = new ArrayList<>();
+        for (int i = 0; i < JOINS; i++) {
+            long userId = FIRST_USER_ID + i;
+            joins.add(() -> {
+                groupMemberService.add(GROUP_ID, userId);
+                return null;
+            });
+        }
+        // 与入群并发修改群信息（先锁群聊行，再锁变更序号行）
+        for (int i = 0; i < GROUP_EDITS; i++) {
+            String name = "concurrency-test-" + i;
+            joins.add(() -> {
+                ChatGroup group = new ChatGroup();
+                group.setId(GROUP_ID);
+                group.setName(name);
+                chatGroupService.update(group, OWNER_ID);
+                return null;
+            });
+        }
+        runConcurrently(joins);
+        assertMembers(JOINS + 1);
+
+        List<Callable<Void>> leaves = new ArrayList<>();
+        for (int i = 0; i < LEAVES; i++) {
+            long userId = FIRST_USER_ID + i;
+            leaves.add(() -> {
+                groupMemberService.delete(GROUP_ID, userId);
+                return null;
+            });
+        }
+        runConcurrently(leaves);
+        assertMembers(JOINS + 1 - LEAVES);
+    }
+
+    private void assertMembers(int expected) {
+        assertThat(groupMapper.selectById(GROUP_ID).getNumber()).isEqualTo(expected);
+        assertThat(groupMemberMapper.selectCount(new LambdaQueryWrapper<GroupMember>()
+                .eq(GroupMember::getGroupId, GROUP_ID)
+                .ne(GroupMember::getStatus, GroupMember.GROUP_MEMBER_STATUS_DELETED))).isEqualTo(expected);
+    }
+
+    /**
+     * 以群主身份同时执行所有任务，任一任务失败（包括死锁回滚）则测试失败
+     */
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                UserContext.setId(OWNER_ID);
+                try {
+                    return task.call();
+                } finally {
+                    UserContext.clearId();
+                }
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
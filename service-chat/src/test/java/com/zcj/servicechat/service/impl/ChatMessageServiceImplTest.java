@@ -0,0 +1,70 @@
+package com.zcj.servicechat.service.impl;
+
+import com.zcj.common.dto.ChatMessageSyncDTO;
+import com.zcj.common.entity.ChatMessage;
+import com.zcj.common.vo.MessageSyncVO;
+import com.zcj.servicechat.mapper.ChatMessageMapper;
+import com.zcj.servicechat.service.SyncExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChatMessageServiceImpl 测试类：批量同步时超过单会话上限的会话被截断并标记
+ */
+class ChatMessageServiceImplTest {
+
+    private static final int LIMIT = ChatMessageServiceImpl.SYNC_SESSION_LIMIT;
+
+    private static ChatMessage message(long sessionId, long messageId) {
+        ChatMessage message = new ChatMessage();
+        message.setSessionId(sessionId);
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTruncatedSessionsFlagged() {
+        // 会话 1 多出一条，会话 2 恰好达到上限，会话 3 只有少量消息
+        List<ChatMessage> rows = new ArrayList<>();
+        for (long id = 1; id <= LIMIT + 1; id++) rows.add(message(1, id));
+        for (long id = 1; id <= LIMIT; id++) rows.add(message(2, id));
+        rows.add(message(3, 1));
+        ChatMessageMapper chatMessageMapper = mock(ChatMessageMapper.class);
+        when(chatMessageMapper.selectBatchBySessionAndLastId(anyList(), eq(LIMIT + 1))).thenReturn(rows);
+        SyncExecutor syncExecutor = mock(SyncExecutor.class);
+        when(syncExecutor.invokeAll(anyList())).thenAnswer(invocation -> {
+            List<Object> results = new ArrayList<>();
+            for (Callable<?> task : (List<Callable<?>>) invocation.getArgument(0)) {
+                results.add(task.call());
+            }
+            return results;
+        });
+        ChatMessageServiceImpl chatMessageService = new ChatMessageServiceImpl(chatMessageMapper, syncExecutor);
+
+        MessageSyncVO vo = chatMessageService.syncBatch(List.of(new ChatMessageSyncDTO(1L, 0L),
+                new ChatMessageSyncDTO(2L, 0L), new ChatMessageSyncDTO(3L, 0L)));
+
+        assertThat(vo.getMessages()).hasSize(LIMIT * 2 + 1);
+        assertThat(vo.getMessages()).filteredOn(m -> m.getSessionId() == 1L)
+                .extracting(ChatMessage::getMessageId).endsWith((long) LIMIT);
+        assertThat(vo.getTruncatedSessionIds()).containsExactly(1L);
+        assertThat(vo.isHasMore()).isTrue();
+    }
+
+    @Test
+    void testEmptyRequest() {
+        ChatMessageServiceImpl chatMessageService = new ChatMessageServiceImpl(mock(ChatMessageMapper.class),
+                mock(SyncExecutor.class));
+        MessageSyncVO vo = chatMessageService.syncBatch(List.of());
+        assertThat(vo.getMessages()).isEmpty();
+        assertThat(vo.isHasMore()).isFalse();
+    }
+}
@@ -0,0 +1,126 @@
+package com.zcj.servicechat.service.impl;
+
+import com.zcj.common.dto.DeltaSyncDTO;
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.common.feign.UserServiceFeignClient;
+import com.zcj.common.vo.DeltaSyncVO;
+import com.zcj.common.vo.MessageSyncVO;
+import com.zcj.common.vo.Result;
+import com.zcj.servicechat.mapper.ChatSessionMapper;
+import com.zcj.servicechat.mapper.GroupMapper;
+import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DeltaSyncServiceImpl 测试类：按变更日志同步时合并重复的变更，读满一页时提示还有更多
+ */
+class DeltaSyncServiceImplTest {
+
+    private static final long USER_ID = 1L;
+
+    private ChangeLogService changeLogService;
+    private ChatSessionMapper chatSessionMapper;
+    private GroupMapper groupMapper;
+    private GroupMemberMapper groupMemberMapper;
+    private DeltaSyncServiceImpl deltaSyncService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        changeLogService = mock(ChangeLogService.class);
+        chatSessionMapper = mock(ChatSessionMapper.class);
+        groupMapper = mock(GroupMapper.class);
+        groupMemberMapper = mock(GroupMemberMapper.class);
+        UserServiceFeignClient userServiceFeignClient = mock(UserServiceFeignClient.class);
+        when(userServiceFeignClient.syncUserFriend(any(), any())).thenReturn(Result.success(List.of()));
+        when(userServiceFeignClient.syncRequest(any(), any())).thenReturn(Result.success(List.of()));
+        ChatMessageService chatMessageService = mock(ChatMessageService.class);
+        when(chatMessageService.syncBatch(any())).thenReturn(new MessageSyncVO());
+        // 在调用线程上依次执行
+        SyncExecutor syncExecutor = mock(SyncExecutor.class);
+        when(syncExecutor.invokeAll(anyList())).thenAnswer(invocation -> {
+            List<Object> results = new ArrayList<>();
+            for (Callable<?> task : (List<Callable<?>>) invocation.getArgument(0)) {
+                results.add(task.call());
+            }
+            return results;
+        });
+        deltaSyncService = new DeltaSyncServiceImpl(groupMemberMapper, chatSessionMapper, groupMapper,
+                changeLogService, mock(ChatSessionService.class), mock(ChatGroupService.class),
+                mock(GroupMemberService.class), chatMessageService, userServiceFeignClient, syncExecutor);
+    }
+
+    private DeltaSyncVO sync(long changeSeq) {
+        DeltaSyncDTO dto = new DeltaSyncDTO();
+        dto.getVersions().put(DeltaSyncServiceImpl.CHANGE_SEQ, changeSeq);
+        return deltaSyncService.sync(USER_ID, dto);
+    }
+
+    private static UserChangeLog at(long seq, UserChangeLog change) {
+        change.setUserId(USER_ID);
+        change.setSeq(seq);
+        return change;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDedupeRepeatedChanges() {
+        when(changeLogService.since(USER_ID, 5L, DeltaSyncServiceImpl.CHANGE_LIMIT)).thenReturn(List.of(
+                at(6, UserChangeLog.session(100)),
+                at(7, UserChangeLog.group(200)),
+                at(8, UserChangeLog.session(100)),
+                at(9, UserChangeLog.member(200, 7)),
+                at(10, UserChangeLog.member(200, 7)),
+                at(11, UserChangeLog.member(300, 8)),
+                at(12, new UserChangeLog(null, null, UserChangeLog.TABLE_GROUP_MEMBER, 300L, null, null))));
+
+        DeltaSyncVO vo = sync(5);
+
+        ArgumentCaptor<Collection<Long>> sessionIds = ArgumentCaptor.forClass(Collection.class);
+        verify(chatSessionMapper).selectBatchIds(sessionIds.capture());
+        assertThat(sessionIds.getValue()).containsExactly(100L);
+        ArgumentCaptor<Collection<Long>> groupIds = ArgumentCaptor.forClass(Collection.class);
+        verify(groupMapper).selectBatchIds(groupIds.capture());
+        assertThat(groupIds.getValue()).containsExactly(200L);
+        // 群 300 查询完整成员列表，群 200 只查询变更的成员：共两次查询
+        verify(groupMemberMapper, times(2)).selectList(any());
+        assertThat(vo.getVersions()).containsEntry(DeltaSyncServiceImpl.CHANGE_SEQ, 12L);
+        assertThat(vo.isHasMore()).isFalse();
+    }
+
+    @Test
+    void testHasMoreAtLimit() {
+        List<UserChangeLog> page = new ArrayList<>();
+        for (long seq = 1; seq <= DeltaSyncServiceImpl.CHANGE_LIMIT; seq++) {
+            page.add(at(seq, UserChangeLog.session(100 + seq)));
+        }
+        when(changeLogService.since(USER_ID, 0L, DeltaSyncServiceImpl.CHANGE_LIMIT)).thenReturn(page);
+
+        DeltaSyncVO vo = sync(0);
+        assertThat(vo.isHasMore()).isTrue();
+        assertThat(vo.getVersions()).containsEntry(DeltaSyncServiceImpl.CHANGE_SEQ, (long) DeltaSyncServiceImpl.CHANGE_LIMIT);
+    }
+
+    @Test
+    void testNoChangesKeepsSeq() {
+        when(changeLogService.since(USER_ID, 42L, DeltaSyncServiceImpl.CHANGE_LIMIT)).thenReturn(List.of());
+
+        DeltaSyncVO vo = sync(42);
+        assertThat(vo.isHasMore()).isFalse();
+        assertThat(vo.getChatSessions()).isEmpty();
+        assertThat(vo.getVersions()).containsEntry(DeltaSyncServiceImpl.CHANGE_SEQ, 42L);
+        verifyNoInteractions(chatSessionMapper, groupMapper, groupMemberMapper);
+    }
+}
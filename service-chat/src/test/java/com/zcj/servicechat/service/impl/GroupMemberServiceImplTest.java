@@ -0,0 +1,107 @@
+package com.zcj.servicechat.service.impl;
+
+import com.zcj.common.context.UserContext;
+import com.zcj.common.entity.ChatSession;
+import com.zcj.common.entity.GroupMember;
+import com.zcj.common.entity.UserChangeLog;
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.common.utils.ResponseCacheInvalidator;
+import com.zcj.common.utils.SyncNotifier;
+import com.zcj.servicechat.mapper.ChatSessionMapper;
+import com.zcj.servicechat.mapper.GroupMapper;
+import com.zcj.servicechat.mapper.GroupMemberMapper;
+import com.zcj.servicechat.service.ChangeLogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * GroupMemberServiceImpl 测试类：批量入群写入的变更日志行数与加入人数、成员数成线性关系
+ */
+class GroupMemberServiceImplTest {
+
+    private static final long GROUP_ID = 100L;
+    private static final long OWNER_ID = 1L;
+    private static final int MEMBERS = 500;
+
+    private GroupMemberMapper groupMemberMapper;
+    private ChangeLogService changeLogService;
+    private GroupMemberServiceImpl groupMemberService;
+
+    @BeforeEach
+    void setUp() {
+        groupMemberMapper = mock(GroupMemberMapper.class);
+        GroupMember owner = new GroupMember();
+        owner.setGroupId(GROUP_ID);
+        owner.setUserId(OWNER_ID);
+        owner.setRole(GroupMember.GROUP_MEMBER_ROLE_OWNER);
+        when(groupMemberMapper.selectOne(any())).thenReturn(owner);
+        when(groupMemberMapper.selectList(any())).thenReturn(List.of());
+        when(groupMemberMapper.selectMemberIdsForShare(GROUP_ID))
+                .thenReturn(LongStream.rangeClosed(1, MEMBERS).boxed().toList());
+        GroupMapper groupMapper = mock(GroupMapper.class);
+        when(groupMapper.incrementNumber(eq(GROUP_ID), anyInt(), anyLong())).thenReturn(1);
+        ChatSessionMapper chatSessionMapper = mock(ChatSessionMapper.class);
+        ChatSession session = new ChatSession();
+        session.setId(200L);
+        when(chatSessionMapper.selectOne(any())).thenReturn(session);
+        changeLogService = mock(ChangeLogService.class);
+        groupMemberService = new GroupMemberServiceImpl(groupMemberMapper, mock(SyncNotifier.class), groupMapper,
+                mock(ResponseCacheInvalidator.class), chatSessionMapper, changeLogService,
+                mock(GroupMembershipCache.class));
+        UserContext.setId(OWNER_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserContext.clearId();
+    }
+
+    private static List<Long> newUsers(int count) {
+        return LongStream.range(10_000, 10_000 + count).boxed().toList();
+    }
+
+    /**
+     * 每次 record 写入的行数 = 接收者数 × 变更数
+     */
+    @SuppressWarnings("unchecked")
+    private long recordedRows() {
+        ArgumentCaptor<Collection<Long>> recipients = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<List<UserChangeLog>> changes = ArgumentCaptor.forClass(List.class);
+        verify(changeLogService, atLeastOnce()).record(recipients.capture(), changes.capture());
+        long rows = 0;
+        for (int i = 0; i < recipients.getAllValues().size(); i++) {
+            rows += (long) recipients.getAllValues().get(i).size() * changes.getAllValues().get(i).size();
+        }
+        return rows;
+    }
+
+    @Test
+    void testLargeBatchFanOutIsLinear() {
+        groupMemberService.addBatch(GROUP_ID, newUsers(500));
+        // 原有成员各 2 条（群组 + 完整成员列表），新成员各 3 条（群组 + 会话 + 完整成员列表）
+        assertThat(recordedRows()).isEqualTo(MEMBERS * 2L + 500 * 3L);
+    }
+
+    @Test
+    void testSmallBatchRecordsEachMember() {
+        List<Long> joined = newUsers(2);
+        groupMemberService.addBatch(GROUP_ID, joined);
+
+        List<UserChangeLog> expected = new ArrayList<>();
+        expected.add(UserChangeLog.group(GROUP_ID));
+        joined.forEach(userId -> expected.add(UserChangeLog.member(GROUP_ID, userId)));
+        verify(changeLogService).record(argThat(ids -> ids.size() == MEMBERS), eq(expected));
+        assertThat(recordedRows()).isEqualTo(MEMBERS * 3L + 2 * 3L);
+    }
+}
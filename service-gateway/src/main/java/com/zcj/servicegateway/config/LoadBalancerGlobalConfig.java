@@ -1,7 +1,10 @@
 package com.zcj.servicegateway.config;
 
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+// 为 service-netty 配置 UserIdHashLoadBalancer
+@LoadBalancerClient(name = "service-netty", configuration = UserIdHashLoadBalancerConfig.class)
 public class LoadBalancerGlobalConfig {
 }
@@ -0,0 +1,31 @@
+package com.zcj.servicegateway.config;
+
+import com.zcj.common.utils.ResponseCacheInvalidator;
+import com.zcj.servicegateway.filter.ResponseCacheFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+@Configuration
+public class ResponseCacheConfig {
+
+    /**
+     * 订阅业务服务发布的缓存失效通知
+     */
+    @Bean
+    public RedisMessageListenerContainer responseCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                        ResponseCacheFilter responseCacheFilter) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            String tags = new String(message.getBody(), StandardCharsets.UTF_8);
+            responseCacheFilter.invalidate(Arrays.asList(tags.split(",")));
+        }, new ChannelTopic(ResponseCacheInvalidator.INVALIDATE_CHANNEL));
+        return container;
+    }
+}
@@ -1,32 +1,34 @@
 package com.zcj.servicegateway.config;
 
 import com.zcj.servicegateway.loadbalance.UserIdHashLoadBalancer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
 import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
 import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.env.Environment;
 
 
-// todo: 根据用户ID 进行负载均衡
-//@Configuration
-// 为特定服务配置 UserIdHashLoadBalancer
-//@LoadBalancerClient(name = "service-netty", configuration = UserIdHashLoadBalancerConfig.class)
+/**
+ * service-netty 的负载均衡配置：按用户ID一致性哈希（有界负载）
+ * 由 LoadBalancerGlobalConfig 中的 @LoadBalancerClient 引用，不能加 @Configuration，否则会对所有服务生效
+ */
+@Slf4j
 public class UserIdHashLoadBalancerConfig {
 
     @Bean
-    public ReactorLoadBalancer<ServiceInstance> userIdLoadBalancer(
+    public UserIdHashLoadBalancer userIdLoadBalancer(
             Environment environment,
             LoadBalancerClientFactory factory) {
 
         String serviceId = LoadBalancerClientFactory.getName(environment);
-        System.out.println("=== 配置 UserIdHashLoadBalancer，serviceId: " + serviceId + " ===");
+        int virtualNodes = environment.getProperty("gateway.loadbalancer.virtual-nodes", Integer.class, 160);
+        double loadFactor = environment.getProperty("gateway.loadbalancer.load-factor", Double.class, 1.25);
+        log.info("配置 UserIdHashLoadBalancer，serviceId: {}, 虚拟节点数: {}, 负载系数: {}", serviceId, virtualNodes, loadFactor);
 
         ObjectProvider<ServiceInstanceListSupplier> supplierProvider = factory
                 .getLazyProvider(serviceId, ServiceInstanceListSupplier.class);
 
-        return new UserIdHashLoadBalancer(supplierProvider, serviceId);
+        return new UserIdHashLoadBalancer(supplierProvider, serviceId, virtualNodes, loadFactor);
     }
 }
@@ -0,0 +1,83 @@
+package com.zcj.servicegateway.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按路径段构建的前缀树，用于路径白名单匹配
+ * <p>
+ * 规则以 / 分段，段 * 匹配任意单个段，结尾的 ** 匹配其后任意多段（含零段）；
+ * 其他规则只精确匹配。匹配时直接在原字符串上按段比较，不做切分分配。
+ */
+public final class PathTrie {
+
+    private final Node root = new Node();
+
+    public PathTrie(String... patterns) {
+        for (String pattern : patterns) {
+            add(pattern);
+        }
+    }
+
+    public void add(String pattern) {
+        Node node = root;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (segment.equals("**")) {
+                node.prefix = true;
+                return;
+            }
+            if (segment.equals("*")) {
+                if (node.wildcard == null) node.wildcard = new Node();
+                node = node.wildcard;
+            } else {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+        node.terminal = true;
+    }
+
+    public boolean matches(String path) {
+        return matches(root, path, 0);
+    }
+
+    private static boolean matches(Node node, String path, int from) {
+        while (true) {
+            if (node.prefix) return true;
+            // 跳过连续的 /
+            while (from < path.length() && path.charAt(from) == '/') from++;
+            if (from >= path.length()) return node.terminal;
+            int end = path.indexOf('/', from);
+            if (end < 0) end = path.length();
+            Node next = node.find(path, from, end);
+            if (node.wildcard != null) {
+                // 精确段优先，失败时再尝试 *
+                if (next != null && matches(next, path, end)) return true;
+                next = node.wildcard;
+            }
+            if (next == null) return false;
+            node = next;
+            from = end;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node wildcard;
+        // 规则在此结束
+        private boolean terminal;
+        // 规则以 ** 结束，之后的路径全部匹配
+        private boolean prefix;
+
+        private Node find(String path, int from, int end) {
+            int length = end - from;
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                String key = entry.getKey();
+                if (key.length() == length && path.regionMatches(from, key, 0, length)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+    }
+}
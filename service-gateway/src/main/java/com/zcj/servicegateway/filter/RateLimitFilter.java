@@ -0,0 +1,88 @@
+package com.zcj.servicegateway.filter;
+
+import com.zcj.common.utils.RedisRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 请求限流：已登录请求按用户ID限流，未登录请求（登录、注册等白名单接口）按客户端IP限流
+ * 预算为集群全局值，保存在 Redis，本地按批预扣，不阻塞响应式线程
+ * 客户端IP取自连接的对端地址；仅当对端是配置的可信代理时才使用 X-Forwarded-For，
+ * 并从右往左取第一个不可信的地址（客户端可以任意伪造左侧的值）
+ */
+@Slf4j
+@Component
+public class RateLimitFilter implements GlobalFilter, Ordered {
+
+    private final RedisRateLimiter userLimiter;
+    private final RedisRateLimiter ipLimiter;
+    // 可信代理（负载均衡等）的IP
+    private final Set<String> trustedProxies;
+
+    public RateLimitFilter(StringRedisTemplate redisTemplate,
+                           @Value("${gateway.rate-limit.user.rate:20}") double userRate,
+                           @Value("${gateway.rate-limit.user.capacity:40}") int userCapacity,
+                           @Value("${gateway.rate-limit.ip.rate:10}") double ipRate,
+                           @Value("${gateway.rate-limit.ip.capacity:20}") int ipCapacity,
+                           @Value("${gateway.rate-limit.trusted-proxies:}") String[] trustedProxies) {
+        this.userLimiter = new RedisRateLimiter(redisTemplate, "gateway:user", userRate, userCapacity, 5);
+        this.ipLimiter = new RedisRateLimiter(redisTemplate, "gateway:ip", ipRate, ipCapacity, 2);
+        this.trustedProxies = Arrays.stream(trustedProxies).map(String::trim).filter(ip -> !ip.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        String userId = exchange.getAttribute("X-User-Id");
+        boolean acquired = userId != null
+                ? userLimiter.tryAcquire(userId)
+                : ipLimiter.tryAcquire(clientIp(exchange.getRequest()));
+        if (!acquired) {
+            log.debug("请求过于频繁, userId={}, path={}", userId, exchange.getRequest().getPath().value());
+            exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return exchange.getResponse().setComplete();
+        }
+        return chain.filter(exchange);
+    }
+
+    String clientIp(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        String peer = address != null && address.getAddress() != null ? address.getAddress().getHostAddress() : "unknown";
+        if (!trustedProxies.contains(peer)) {
+            return peer;
+        }
+        // 每一跳代理把它的对端追加在末尾，从右往左跳过可信代理
+        String client = peer;
+        List<String> hops = request.getHeaders().getValuesAsList("X-Forwarded-For");
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            String hop = hops.get(i).trim();
+            if (hop.isEmpty()) continue;
+            client = hop;
+            if (!trustedProxies.contains(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    // 在TokenValidateFilter之后（使用验证后的用户ID）、响应缓存之前执行
+    @Override
+    public int getOrder() {
+        return -150;
+    }
+}
@@ -0,0 +1,267 @@
+package com.zcj.servicegateway.filter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zcj.common.utils.ResponseCacheInvalidator;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读多写少接口的网关响应缓存
+ * <p>
+ * 按规则缓存用户、群组信息等接口的成功响应，响应带 ETag，客户端携带 If-None-Match 且未变化时返回 304。
+ * 每个缓存条目带有标签（如 user:1、group:2），业务服务修改数据后通过 ResponseCacheInvalidator
+ * 发布失效通知；失效采用标签版本号：条目记录填充时各标签的版本，读取时版本不一致即视为失效，
+ * 避免失效通知与正在进行的回源请求交错时缓存旧数据。
+ */
+@Slf4j
+@Component
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final byte[] SUCCESS_CODE = "\"code\":200".getBytes(StandardCharsets.UTF_8);
+
+    // 缓存规则（方法 + 路径）
+    private static final Map<String, Rule> RULES = Map.of(
+            "GET /api/user/info", new Rule(60, ResponseCacheFilter::userInfo),
+            "POST /api/user/infoBatch", new Rule(60, ResponseCacheFilter::userInfoBatch),
+            "GET /api/group/info", new Rule(60, ResponseCacheFilter::groupInfo)
+    );
+
+    // 缓存键 -> 响应
+    private final Cache<String, CachedResponse> cache = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfter(new Expiry<String, CachedResponse>() {
+                @Override
+                public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                    return value.ttlNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return value.ttlNanos;
+                }
+
+                @Override
+                public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    // 标签 -> 版本号（保留时间远大于条目TTL，版本被淘汰时引用它的条目已过期）
+    private final Cache<String, Long> tagVersions = Caffeine.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        Rule rule = RULES.get(method.name() + " " + exchange.getRequest().getPath().value());
+        if (rule == null) {
+            return chain.filter(exchange);
+        }
+        if (method == HttpMethod.GET) {
+            return handle(exchange, chain, rule, null);
+        }
+        // 需要根据请求体生成缓存键：缓存请求体后再转发
+        return ServerWebExchangeUtils.cacheRequestBodyAndRequest(exchange, request -> {
+            DataBuffer body = exchange.getAttribute(ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR);
+            String content = body == null ? ""
+                    : body.toString(body.readPosition(), body.readableByteCount(), StandardCharsets.UTF_8);
+            return handle(exchange.mutate().request(request).build(), chain, rule, content);
+        });
+    }
+
+    private Mono<Void> handle(ServerWebExchange exchange, GatewayFilterChain chain, Rule rule, String body) {
+        Key key;
+        try {
+            key = rule.keyResolver.resolve(exchange, body);
+        } catch (Exception e) {
+            log.debug("无法生成缓存键，不缓存: {}", e.toString());
+            key = null;
+        }
+        if (key == null) {
+            return chain.filter(exchange);
+        }
+
+        CachedResponse cached = cache.getIfPresent(key.value);
+        if (cached != null && isFresh(cached)) {
+            return writeCached(exchange, cached);
+        }
+
+        // 回源前记录标签版本，回源期间发生的失效会使本次填充的条目立即失效
+        Map<String, Long> versions = new HashMap<>(key.tags.size() * 2);
+        for (String tag : key.tags) {
+            versions.put(tag, versionOf(tag));
+        }
+        String cacheKey = key.value;
+        ServerHttpResponse original = exchange.getResponse();
+        ServerHttpResponseDecorator decorated = new ServerHttpResponseDecorator(original) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                if (getStatusCode() != HttpStatus.OK) {
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(Flux.from(body)).flatMap(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    // 只缓存业务成功的响应
+                    if (indexOf(bytes, SUCCESS_CODE) >= 0) {
+                        String etag = etagOf(bytes);
+                        cache.put(cacheKey, new CachedResponse(bytes, getHeaders().getContentType(), etag,
+                                versions, TimeUnit.SECONDS.toNanos(rule.ttlSeconds)));
+                        getHeaders().setETag(etag);
+                    }
+                    return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().response(decorated).build());
+    }
+
+    /**
+     * 淘汰带有任一标签的缓存
+     */
+    public void invalidate(Collection<String> tags) {
+        for (String tag : tags) {
+            tagVersions.asMap().merge(tag, 1L, Long::sum);
+        }
+        log.debug("网关缓存失效: {}", tags);
+    }
+
+    private boolean isFresh(CachedResponse cached) {
+        for (Map.Entry<String, Long> entry : cached.versions.entrySet()) {
+            if (versionOf(entry.getKey()) != entry.getValue()) return false;
+        }
+        return true;
+    }
+
+    private long versionOf(String tag) {
+        Long version = tagVersions.getIfPresent(tag);
+        return version != null ? version : 0L;
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setETag(cached.etag);
+        response.getHeaders().set("X-Cache", "HIT");
+        List<String> ifNoneMatch = exchange.getRequest().getHeaders().getIfNoneMatch();
+        if (ifNoneMatch.contains(cached.etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType != null) {
+            response.getHeaders().setContentType(cached.contentType);
+        }
+        response.getHeaders().setContentLength(cached.body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body)));
+    }
+
+    // ==================== 缓存键 ====================
+
+    /**
+     * 用户信息：未指定 userId 时查询的是当前用户，按请求者区分
+     */
+    private static Key userInfo(ServerWebExchange exchange, String body) {
+        String userId = exchange.getRequest().getQueryParams().getFirst("userId");
+        if (userId == null) {
+            userId = exchange.getAttribute("X-User-Id");
+        }
+        if (userId == null) return null;
+        long id = Long.parseLong(userId);
+        return new Key("user/info:" + id, List.of(ResponseCacheInvalidator.userTag(id)));
+    }
+
+    private static Key userInfoBatch(ServerWebExchange exchange, String body) throws Exception {
+        List<Long> userIds = objectMapper.readValue(body, new TypeReference<List<Long>>() {});
+        if (userIds == null || userIds.isEmpty()) return null;
+        List<String> tags = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            tags.add(ResponseCacheInvalidator.userTag(userId));
+        }
+        return new Key("user/infoBatch:" + digest(userIds.toString().getBytes(StandardCharsets.UTF_8)), tags);
+    }
+
+    private static Key groupInfo(ServerWebExchange exchange, String body) {
+        String groupId = exchange.getRequest().getQueryParams().getFirst("groupId");
+        if (groupId == null) return null;
+        long id = Long.parseLong(groupId);
+        return new Key("group/info:" + id, List.of(ResponseCacheInvalidator.groupTag(id)));
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private static String etagOf(byte[] body) {
+        return "\"" + digest(body).substring(0, 22) + "\"";
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int indexOf(byte[] source, byte[] target) {
+        outer:
+        for (int i = 0; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @FunctionalInterface
+    private interface KeyResolver {
+        /**
+         * @return 缓存键，返回null表示该请求不缓存
+         */
+        Key resolve(ServerWebExchange exchange, String body) throws Exception;
+    }
+
+    private record Rule(long ttlSeconds, KeyResolver keyResolver) {
+    }
+
+    private record Key(String value, List<String> tags) {
+    }
+
+    private record CachedResponse(byte[] body, MediaType contentType, String etag,
+                                  Map<String, Long> versions, long ttlNanos) {
+    }
+
+    // 在TokenValidateFilter之后执行，使用验证后的用户ID
+    @Override
+    public int getOrder() {
+        return -100;
+    }
+}
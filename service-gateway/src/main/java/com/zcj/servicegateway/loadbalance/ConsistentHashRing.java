@@ -0,0 +1,126 @@
+package com.zcj.servicegateway.loadbalance;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 带虚拟节点的一致性哈希环（不可变，实例列表变化时整体重建）
+ * <p>
+ * 每个节点在环上放置 virtualNodes 个虚拟节点，增删一个节点只影响约 1/N 的键。
+ * 选择时支持有界负载：节点负载达到 ceil(loadFactor * (总负载 + 1) / 节点数) 时顺时针跳过，
+ * 保证热点不会把单个节点压垮，同时绝大多数键仍落在原节点上。
+ */
+public final class ConsistentHashRing<T> {
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // 虚拟节点在环上的位置（升序）
+    private final long[] positions;
+    // positions[i] 对应的节点下标
+    private final int[] owners;
+    private final List<T> nodes;
+
+    /**
+     * @param nodes        节点列表
+     * @param keyOf        节点的稳定标识（如 host:port），决定虚拟节点位置
+     * @param virtualNodes 每个节点的虚拟节点数
+     */
+    public ConsistentHashRing(List<T> nodes, Function<T, String> keyOf, int virtualNodes) {
+        this.nodes = List.copyOf(nodes);
+        int size = this.nodes.size() * virtualNodes;
+        long[] points = new long[size];
+        int[] pointOwners = new int[size];
+        int n = 0;
+        for (int i = 0; i < this.nodes.size(); i++) {
+            String key = keyOf.apply(this.nodes.get(i));
+            // 每次MD5产生16字节，切成2个位置
+            for (int v = 0; v < virtualNodes; v += 2) {
+                byte[] digest = MD5.get().digest((key + "#" + v).getBytes(StandardCharsets.UTF_8));
+                for (int part = 0; part < 2 && v + part < virtualNodes; part++) {
+                    points[n] = toLong(digest, part * 8);
+                    pointOwners[n] = i;
+                    n++;
+                }
+            }
+        }
+        // 按位置排序（位置与所属节点一起排序）
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(points[a], points[b]));
+        positions = new long[n];
+        owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = points[order[i]];
+            owners[i] = pointOwners[order[i]];
+        }
+    }
+
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 不考虑负载，返回键所在的节点
+     */
+    public T get(String key) {
+        if (positions.length == 0) return null;
+        return nodes.get(owners[start(hash(key))]);
+    }
+
+    /**
+     * 有界负载选择
+     * @param key        路由键
+     * @param loadOf     节点当前负载
+     * @param loadFactor 负载上限系数（大于1，越小越均衡、迁移越多）
+     */
+    public T get(String key, ToIntFunction<T> loadOf, double loadFactor) {
+        if (positions.length == 0) return null;
+        int total = 0;
+        int[] loads = new int[nodes.size()];
+        for (int i = 0; i < loads.length; i++) {
+            loads[i] = loadOf.applyAsInt(nodes.get(i));
+            total += loads[i];
+        }
+        int capacity = (int) Math.ceil(loadFactor * (total + 1) / nodes.size());
+        int index = start(hash(key));
+        for (int i = 0; i < positions.length; i++) {
+            int owner = owners[(index + i) % positions.length];
+            if (loads[owner] < capacity) {
+                return nodes.get(owner);
+            }
+        }
+        return nodes.get(owners[index]);
+    }
+
+    /**
+     * 顺时针第一个位置不小于 hash 的虚拟节点下标
+     */
+    private int start(long hash) {
+        int index = Arrays.binarySearch(positions, hash);
+        if (index < 0) index = -index - 1;
+        return index == positions.length ? 0 : index;
+    }
+
+    static long hash(String key) {
+        return toLong(MD5.get().digest(key.getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
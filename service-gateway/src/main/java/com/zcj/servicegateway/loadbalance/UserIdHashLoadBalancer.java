@@ -4,22 +4,43 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.loadbalancer.*;
-import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
 import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
-import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 按用户ID一致性哈希选择实例（有界负载）
+ * <p>
+ * 哈希环只在实例列表变化时重建，扩缩容时约 1/N 的用户迁移；
+ * 实例的进行中请求数超过平均值的 loadFactor 倍时顺时针顺延，避免热点。
+ * 同时作为 LoadBalancerLifecycle 统计每个实例的进行中请求数。
+ */
 @Slf4j
-public class UserIdHashLoadBalancer implements ReactorLoadBalancer<ServiceInstance> {
+public class UserIdHashLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+        LoadBalancerLifecycle<Object, Object, ServiceInstance> {
 
     private final String serviceId;
     private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final int virtualNodes;
+    private final double loadFactor;
 
-    public UserIdHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId) {
+    // 当前哈希环及其对应的实例标识
+    private volatile RingHolder ring = new RingHolder(Collections.emptySet(), null, null);
+    // 实例(host:port) -> 进行中请求数
+    private final Map<String, AtomicInteger> inflight = new ConcurrentHashMap<>();
+    // 无用户ID时的轮询位置
+    private final AtomicInteger position = new AtomicInteger(new Random().nextInt(1000));
+
+    public UserIdHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId,
+                                  int virtualNodes, double loadFactor) {
         this.serviceId = serviceId;
         this.supplierProvider = supplierProvider;
+        this.virtualNodes = virtualNodes;
+        this.loadFactor = loadFactor;
     }
 
     @Override
@@ -35,6 +56,7 @@ public class UserIdHashLoadBalancer implements ReactorLoadBalancer<ServiceInstan
 
     private Response<ServiceInstance> chooseInstance(List<ServiceInstance> instances, Request request) {
         if (instances.isEmpty()) {
+            log.warn("服务 {} 没有可用实例", serviceId);
             return new EmptyResponse();
         }
 
@@ -48,26 +70,93 @@ public class UserIdHashLoadBalancer implements ReactorLoadBalancer<ServiceInstan
 
         if (userId == null) {
             // fallback 策略：轮询
-            int index = (int) (System.currentTimeMillis() % instances.size());
+            int index = (position.getAndIncrement() & Integer.MAX_VALUE) % instances.size();
             chosen = instances.get(index);
-            log.warn("未找到 X-User-Id，使用 fallback 实例: {}", chosen.getUri());
+            log.debug("未找到 X-User-Id，轮询选择实例: {}", chosen.getUri());
         } else {
-            int index = Math.abs(userId.hashCode() % instances.size());
-            chosen = instances.get(index);
-            log.info("UserId={} → hash index={} → 选择实例 {}", userId, index, chosen.getUri());
+            chosen = ringOf(instances).get(userId, this::loadOf, loadFactor);
+            log.debug("UserId={} → 选择实例 {}", userId, chosen.getUri());
         }
 
         return new DefaultResponse(chosen);
     }
 
+    /**
+     * 实例列表不变时复用哈希环
+     */
+    private ConsistentHashRing<ServiceInstance> ringOf(List<ServiceInstance> instances) {
+        RingHolder current = ring;
+        if (current.ring != null && current.instances == instances) {
+            return current.ring;
+        }
+        Set<String> keys = new HashSet<>(instances.size() * 2);
+        for (ServiceInstance instance : instances) {
+            keys.add(keyOf(instance));
+        }
+        if (current.ring == null || !current.keys.equals(keys)) {
+            log.info("服务 {} 实例列表变化，重建哈希环: {}", serviceId, keys);
+            current = new RingHolder(keys, new ConsistentHashRing<>(instances, UserIdHashLoadBalancer::keyOf, virtualNodes), instances);
+            // 清理已下线实例的计数
+            inflight.keySet().retainAll(keys);
+        } else {
+            current = new RingHolder(keys, current.ring, instances);
+        }
+        ring = current;
+        return current.ring;
+    }
+
+    private int loadOf(ServiceInstance instance) {
+        AtomicInteger count = inflight.get(keyOf(instance));
+        return count != null ? count.get() : 0;
+    }
+
+    private static String keyOf(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
     private String extractUserIdFromRequest(Request request) {
         Object context = request.getContext();
 
-        if (context instanceof ServerWebExchange) {
-            ServerWebExchange exchange = (ServerWebExchange) context;
-            return exchange.getRequest().getHeaders().getFirst("X-User-Id");
+        if (context instanceof RequestDataContext dataContext && dataContext.getClientRequest() != null) {
+            return dataContext.getClientRequest().getHeaders().getFirst("X-User-Id");
         }
 
         return null;
     }
-}
\ No newline at end of file
+
+    // ==================== 进行中请求统计 ====================
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse.hasServer()) {
+            inflight.computeIfAbsent(keyOf(lbResponse.getServer()), k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()) return;
+        AtomicInteger count = inflight.get(keyOf(lbResponse.getServer()));
+        if (count != null) {
+            count.updateAndGet(c -> Math.max(0, c - 1));
+        }
+    }
+
+    private static final class RingHolder {
+        private final Set<String> keys;
+        private final ConsistentHashRing<ServiceInstance> ring;
+        // 构建时的实例列表引用（供应者缓存列表时可直接按引用判断）
+        private final List<ServiceInstance> instances;
+
+        private RingHolder(Set<String> keys, ConsistentHashRing<ServiceInstance> ring, List<ServiceInstance> instances) {
+            this.keys = keys;
+            this.ring = ring;
+            this.instances = instances;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.zcj.servicegateway.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathTrieTest {
+
+    private final PathTrie trie = new PathTrie(
+            "/api/user/login/**",
+            "/api/avatar/**",
+            "/api/*/public"
+    );
+
+    @Test
+    void testPrefix() {
+        assertTrue(trie.matches("/api/user/login"));
+        assertTrue(trie.matches("/api/user/login/"));
+        assertTrue(trie.matches("/api/avatar/abc.png"));
+        assertFalse(trie.matches("/api/user/loginx"));
+        assertFalse(trie.matches("/api/user/info"));
+    }
+
+    @Test
+    void testWildcard() {
+        assertTrue(trie.matches("/api/group/public"));
+        assertFalse(trie.matches("/api/group/public/1"));
+        assertFalse(trie.matches("/api/group"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.zcj.servicegateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class RateLimitFilterTest {
+
+    private final RateLimitFilter filter = new RateLimitFilter(mock(StringRedisTemplate.class),
+            20, 40, 10, 20, new String[]{"10.0.0.1", "10.0.0.2"});
+
+    private static MockServerHttpRequest request(String peer, String... forwarded) {
+        return MockServerHttpRequest.get("/api/user/login")
+                .remoteAddress(new InetSocketAddress(peer, 12345))
+                .header("X-Forwarded-For", forwarded)
+                .build();
+    }
+
+    @Test
+    void testUntrustedPeerIgnoresForwardedFor() {
+        assertEquals("203.0.113.9", filter.clientIp(request("203.0.113.9", "1.2.3.4")));
+    }
+
+    @Test
+    void testRightMostUntrustedHop() {
+        // 客户端伪造了最左侧的值，代理追加了真实的对端地址
+        assertEquals("198.51.100.7", filter.clientIp(request("10.0.0.1", "1.2.3.4, 198.51.100.7, 10.0.0.2")));
+        assertEquals("198.51.100.7", filter.clientIp(request("10.0.0.1", "1.2.3.4", "198.51.100.7")));
+    }
+
+    @Test
+    void testAllHopsTrusted() {
+        assertEquals("10.0.0.2", filter.clientIp(request("10.0.0.1", "10.0.0.2")));
+        assertEquals("10.0.0.1", filter.clientIp(request("10.0.0.1")));
+    }
+}
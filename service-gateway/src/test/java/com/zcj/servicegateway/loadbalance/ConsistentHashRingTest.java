@@ -0,0 +1,44 @@
+package com.zcj.servicegateway.loadbalance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> NODES = List.of("10.0.0.1:8904", "10.0.0.2:8904", "10.0.0.3:8904",
+            "10.0.0.4:8904", "10.0.0.5:8904");
+
+    @Test
+    void testScaleOutMovesAboutOneNth() {
+        List<String> scaled = new ArrayList<>(NODES);
+        scaled.add("10.0.0.6:8904");
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(NODES, s -> s, 160);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(scaled, s -> s, 160);
+        int total = 100_000, moved = 0;
+        for (int i = 0; i < total; i++) {
+            String userId = String.valueOf(1_900_000_000_000_000_000L + i * 7919L);
+            if (!before.get(userId).equals(after.get(userId))) moved++;
+        }
+        // 理想值 1/6 ≈ 16.7%
+        assertTrue(moved < total * 0.25, "迁移比例过高: " + moved);
+    }
+
+    @Test
+    void testBoundedLoad() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(NODES, s -> s, 160);
+        Map<String, Integer> load = new HashMap<>();
+        // 同一个热点用户的大量请求
+        for (int i = 0; i < 10_000; i++) {
+            String node = ring.get("hot", n -> load.getOrDefault(n, 0), 1.25);
+            load.merge(node, 1, Integer::sum);
+        }
+        int capacity = (int) Math.ceil(1.25 * 10_000 / NODES.size());
+        load.values().forEach(count -> assertTrue(count <= capacity, "节点超出负载上限: " + count));
+    }
+}
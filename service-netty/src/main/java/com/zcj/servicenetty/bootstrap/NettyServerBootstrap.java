@@ -2,28 +2,42 @@ package com.zcj.servicenetty.bootstrap;
 
 import com.zcj.servicenetty.config.NettyProperties;
 import com.zcj.servicenetty.service.ChannelManager;
+import com.zcj.servicenetty.service.MessageRouterService;
 import com.zcj.servicenetty.service.NettyServerChannelInitializer;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class NettyServerBootstrap {
 
     private EventLoopGroup bossGroup;
+    @Getter
     private EventLoopGroup workerGroup;
+    // 监听端口的服务端通道
+    private volatile Channel serverChannel;
 
     private final NettyProperties properties;
     private final NettyServerChannelInitializer channelInitializer;
     private final ChannelManager channelManager;
+    private final MessageRouterService messageRouterService;
 
+    // 排空模式：停止接收新连接，但已有连接与事件循环继续工作
+    @Getter
+    private volatile boolean draining = false;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     public void start() {
         // 启动独立线程执行Netty逻辑，避免阻塞Spring Boot主线程
@@ -41,32 +55,58 @@ public class NettyServerBootstrap {
                 bindFuture.addListener(future -> {
                     if (future.isSuccess()) {
                         log.info("Netty 消息服务器启动，监听端口：{}", properties.getPort());
-                        // 保存关闭未来，用于后续优雅关闭
-                        ChannelFuture serverCloseFuture = bindFuture.channel().closeFuture();
-                        // 监听服务器通道关闭事件，清理资源
-                        serverCloseFuture.addListener(closeFuture -> {
-                            shutdown();
-                            log.info("Netty 服务器通道已关闭");
-                        });
+                        serverChannel = bindFuture.channel();
                     } else {
                         log.error("Netty 服务器启动失败", future.cause());
                         shutdown(); // 启动失败时关闭资源
                     }
                 });
 
-                // 阻塞等待服务器关闭（仅阻塞当前独立线程，不影响主线程）
+                // 阻塞等待服务器通道关闭（仅阻塞当前独立线程，不影响主线程）
                 bindFuture.channel().closeFuture().sync();
+                log.info("Netty 服务器通道已关闭");
             } catch (InterruptedException e) {
                 log.error("Netty 服务器运行中发生中断", e);
                 Thread.currentThread().interrupt(); // 保留中断状态
             } finally {
-                shutdown(); // 线程退出前确保资源释放
+                // 排空模式下只关闭了监听通道，已有连接由排空流程逐步迁移，事件循环在应用关闭时释放
+                if (!draining) {
+                    shutdown(); // 线程退出前确保资源释放
+                }
             }
         }, "netty-server-thread").start();
 
     }
 
+    /**
+     * 停止接收新连接（进入排空模式）
+     * @return 是否首次进入排空模式
+     */
+    public boolean stopAccepting() {
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        Channel channel = serverChannel;
+        if (channel != null) {
+            channel.close();
+        }
+        log.info("Netty 服务器进入排空模式，停止接收新连接");
+        return true;
+    }
+
+    @PreDestroy
     public void shutdown() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // 写入尚未提交的路由变更，再批量清理本节点的用户路由，避免遗留在Redis中
+        try {
+            messageRouterService.flushRoutes();
+            messageRouterService.removeLocalRoutes(channelManager.getUserIds());
+        } catch (Exception e) {
+            log.warn("清理用户路由失败: {}", e.toString());
+        }
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
         }
@@ -76,4 +116,4 @@ public class NettyServerBootstrap {
         channelManager.clean();
         log.info("Netty 消息服务器关闭");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.zcj.servicenetty.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Configuration
+public class AuthExecutorConfig {
+
+    /**
+     * 连接验证线程池，避免在Netty事件循环中执行JWT验证与Redis操作
+     * 运行在支持虚拟线程的JDK(21+)上时使用虚拟线程，否则使用有界线程池
+     */
+    @Bean(name = "authExecutor", destroyMethod = "shutdown")
+    public ExecutorService authExecutor(NettyProperties nettyProperties) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("连接验证使用虚拟线程");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            // JDK 17 不支持虚拟线程
+        }
+        NettyProperties.Auth auth = nettyProperties.getAuth();
+        int threads = auth.getThreads() > 0 ? auth.getThreads() : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger index = new AtomicInteger();
+        log.info("连接验证使用线程池, 线程数: {}", threads);
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(auth.getQueueSize()),
+                r -> {
+                    Thread thread = new Thread(r, "netty-auth-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -2,6 +2,7 @@ package com.zcj.servicenetty.config;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zcj.common.entity.ChatSession;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,16 +12,17 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class CaffeineConfig {
 
+    // 会话的类型与双方/群ID创建后不再变化，群成员由 GroupMembershipCache 维护
     @Bean()
-    public Cache<String, Set<Long>> session_member_cache() {
+    public Cache<Long, ChatSession> session_info_cache() {
         return Caffeine.newBuilder()
                 .maximumSize(1000000)                     // 最大缓存条数
-                .expireAfterWrite(5, TimeUnit.MINUTES) // 写入后10分钟过期
+                .expireAfterAccess(30, TimeUnit.MINUTES)
                 .build();
     }
 
     @Bean()
-    public Cache<Long, String> user_route_cache() {
+    public Cache<Long, Set<String>> user_route_cache() {
         return Caffeine.newBuilder()
                 .maximumSize(1000000)                     // 最大缓存条数
                 .expireAfterWrite(5, TimeUnit.MINUTES) // 写入后10分钟过期
@@ -1,12 +1,150 @@
 package com.zcj.servicenetty.config;
 
+import com.zcj.common.entity.Protocol;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "netty")
 public class NettyProperties {
     private int port;
+
+    private Heartbeat heartbeat = new Heartbeat();
+
+    private Auth auth = new Auth();
+
+    private RateLimit rateLimit = new RateLimit();
+
+    private Frame frame = new Frame();
+
+    private Websocket websocket = new Websocket();
+
+    private Sync sync = new Sync();
+
+    @Data
+    public static class Heartbeat {
+        // 连接建立后未完成验证的最长时间（秒）
+        private int authTimeout = 30;
+        // 默认读空闲超时（秒），超时未收到任何数据（含心跳）则断开连接
+        private int readerIdleTimeout = 90;
+        // 按平台的读空闲超时（秒），移动端为省电心跳间隔更长
+        private Map<String, Integer> platformReaderIdleTimeout = new HashMap<>();
+
+        public int getReaderIdleTimeout(String platform) {
+            if (platform == null) return readerIdleTimeout;
+            return platformReaderIdleTimeout.getOrDefault(platform, readerIdleTimeout);
+        }
+    }
+
+    @Data
+    public static class Auth {
+        // 验证线程数（不支持虚拟线程时使用），0表示CPU核数*2
+        private int threads = 0;
+        // 验证任务队列长度，队列满时拒绝连接
+        private int queueSize = 10000;
+        // 验证完成前最多缓存的后续帧数量
+        private int maxPendingFrames = 16;
+    }
+
+    @Data
+    public static class RateLimit {
+        // 单个连接每秒消息数与突发量
+        private double channelRate = 10;
+        private int channelCapacity = 20;
+        // 单个用户（所有设备、所有节点）每秒消息数与突发量
+        private double userRate = 20;
+        private int userCapacity = 40;
+        // 每次从Redis领取的令牌数
+        private int userBatch = 5;
+        // 连续超限次数达到该值时关闭连接
+        private int maxRejected = 100;
+    }
+
+    @Data
+    public static class Websocket {
+        // 是否在同一端口接受浏览器的 WebSocket 连接
+        private boolean enabled = true;
+        // WebSocket 握手路径
+        private String path = "/ws";
+        // 握手请求的最大长度（字节）
+        private int maxHandshakeLength = 8192;
+    }
+
+    @Data
+    public static class Sync {
+        // 同步信号合并窗口（毫秒）：窗口内没有新的信号时发送，0表示不合并
+        private int debounceMillis = 50;
+        // 首个信号到发送的最大延迟（毫秒），持续有信号时也不会无限推迟
+        private int maxDelayMillis = 500;
+    }
+
+    @Data
+    public static class Frame {
+        // 默认单帧消息体最大长度（字节），更大的内容需分片发送
+        private int maxFrameLength = 64 * 1024;
+        // 按命令的单帧消息体最大长度，键为命令名（auth、sync、message、ack、heartbeat 等）
+        private Map<String, Integer> orderMaxFrameLength = new HashMap<>();
+        // 分片重组后的消息体最大长度（字节）
+        private int maxMessageLength = 1024 * 1024;
+        // 协议v2中消息体达到该长度时使用LZ4压缩（字节）
+        private int compressThreshold = 256;
+
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private volatile int[] orderLimits;
+
+        /**
+         * 命令对应的单帧消息体最大长度
+         */
+        public int getMaxFrameLength(int orderType) {
+            int[] limits = orderLimits;
+            if (limits == null) {
+                limits = buildOrderLimits();
+                orderLimits = limits;
+            }
+            int index = (orderType & Protocol.ORDER_MASK) >>> 16;
+            return index < limits.length ? limits[index] : maxFrameLength;
+        }
+
+        /**
+         * 所有命令中最大的单帧消息体长度
+         */
+        public int getMaxFrameLengthOfAll() {
+            int max = maxFrameLength;
+            for (int limit : orderMaxFrameLength.values()) {
+                max = Math.max(max, limit);
+            }
+            return max;
+        }
+
+        private int[] buildOrderLimits() {
+            Map<String, Integer> orders = Map.of(
+                    "system", Protocol.ORDER_SYSTEM,
+                    "auth", Protocol.ORDER_AUTH,
+                    "sync", Protocol.ORDER_SYNC,
+                    "message", Protocol.ORDER_MESSAGE,
+                    "ack", Protocol.ORDER_ACK,
+                    "heartbeat", Protocol.ORDER_HEARTBEAT,
+                    "reconnect", Protocol.ORDER_RECONNECT);
+            int[] limits = new int[16];
+            Arrays.fill(limits, maxFrameLength);
+            for (Map.Entry<String, Integer> entry : orderMaxFrameLength.entrySet()) {
+                Integer order = orders.get(entry.getKey().toLowerCase());
+                if (order == null) {
+                    throw new IllegalArgumentException("未知的命令类型: " + entry.getKey());
+                }
+                limits[order >>> 16] = entry.getValue();
+            }
+            return limits;
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package com.zcj.servicenetty.config;
+
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.common.utils.SyncNotifier;
+import com.zcj.servicenetty.service.PresenceService;
+import com.zcj.servicenetty.service.SyncPushService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       PresenceService presenceService,
+                                                                       GroupMembershipCache groupMembershipCache,
+                                                                       SyncPushService syncPushService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 在线状态增量
+        container.addMessageListener(presenceService, new ChannelTopic(PresenceService.PRESENCE_CHANNEL));
+        // 群成员增量
+        container.addMessageListener(groupMembershipCache, new ChannelTopic(GroupMembershipCache.MEMBERSHIP_CHANNEL));
+        // 数据同步信号
+        container.addMessageListener(syncPushService, new ChannelTopic(SyncNotifier.SYNC_CHANNEL));
+        return container;
+    }
+}
@@ -3,9 +3,11 @@ package com.zcj.servicenetty.controller;
 import com.zcj.common.dto.SendRequestDTO;
 import com.zcj.common.entity.ChatMessage;
 import com.zcj.common.entity.Protocol;
+import com.zcj.common.utils.SyncNotifier;
 import com.zcj.servicenetty.service.ChannelManager;
+import com.zcj.servicenetty.service.DrainService;
+import com.zcj.servicenetty.service.PresenceService;
 import com.zcj.common.vo.Result;
-import io.netty.channel.Channel;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,32 +23,26 @@ import java.util.List;
 public class AdminController {
 
     private final ChannelManager channelManager;
+    private final PresenceService presenceService;
+    private final DrainService drainService;
+    private final SyncNotifier syncNotifier;
 
+    /**
+     * 兼容旧调用方：经同步通知广播到所有节点，用户在任意节点在线都能收到
+     */
     @GetMapping("/pushSync")
     public Result<Void> sync(@RequestParam Long id,
                        @RequestParam String table) {
         log.info("/admin/sync id:{}, table:{}", id, table);
-        Channel channel = channelManager.getChannel(id);
-        if (channel != null) {
-            Protocol protocol = new Protocol();
-            protocol.setType(Protocol.ORDER_SYNC | Protocol.CONTENT_TEXT);
-            protocol.setSessionId(id);
-            protocol.setContent(table);
-            protocol.setTimeStamp(System.currentTimeMillis());
-            channel.writeAndFlush(protocol);
-            return Result.success();
-        } else {
-            return Result.error("用户不在线");
-        }
+        syncNotifier.notify(id, table);
+        return Result.success();
     }
 
     @GetMapping("/pushSyncBatch")
     public Result<Void> syncBatch(
             @RequestParam("ids") List<Long> ids,
             @RequestParam("table") String table){
-        for (Long id : ids) {
-            sync(id, table);
-        }
+        syncNotifier.notify(ids, table);
         return Result.success();
     }
 
@@ -56,11 +52,29 @@ public class AdminController {
         ChatMessage message = sendRequest.getMessage();
         Protocol protocol = message.toProtocol();
         for (Long id : ids) {
-            Channel channel = channelManager.getChannel(id);
-            if (channel != null) {
-                channel.writeAndFlush(protocol);
-            }
+            channelManager.writeAndFlush(id, protocol);
         }
         return Result.success();
     }
+
+    /**
+     * 批量查询在线状态（集群范围），返回在线的用户ID
+     */
+    @PostMapping("/presence")
+    public Result<List<Long>> presence(@RequestBody List<Long> ids) {
+        return Result.success(presenceService.filterOnline(ids));
+    }
+
+    /**
+     * 节点排空（滚动发布前调用）：停止接收新连接，在窗口期内分批通知客户端重连到其他节点
+     */
+    @PostMapping("/drain")
+    public Result<Integer> drain(@RequestParam(defaultValue = "60") Integer windowSeconds) {
+        log.info("/admin/drain windowSeconds:{}", windowSeconds);
+        int count = drainService.drain(windowSeconds);
+        if (count < 0) {
+            return Result.error("节点已在排空中");
+        }
+        return Result.success(count);
+    }
 }
@@ -1,17 +1,15 @@
 package com.zcj.servicenetty.controller;
 
-import com.zcj.common.utils.NetUtil;
 import com.zcj.common.vo.Result;
-import com.zcj.servicenetty.config.NettyProperties;
+import com.zcj.servicenetty.service.NodeLoadService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.net.SocketException;
-
 @RestController
 @RequestMapping("/api/netty")
 @Tag(name = "Netty的API接口")
@@ -19,17 +17,14 @@ import java.net.SocketException;
 @RequiredArgsConstructor
 public class NettyServiceController {
 
-    private final NettyProperties nettyProperties;
+    private final NodeLoadService nodeLoadService;
 
+    /**
+     * 分配连接的 Netty 节点（用户已有连接或近期分配过的节点优先，否则选择负载较低的节点）
+     */
     @GetMapping("/getAddr")
-    public Result<String> getAddr() {
-        try {
-            // 构建服务地址（IP:端口）
-            String address = NetUtil.getLocalIp() + ":" + nettyProperties.getPort();
-            return Result.success(address);
-        }catch (SocketException e) {
-            return Result.error(e.toString());
-        }
+    public Result<String> getAddr(@RequestHeader(value = "X-User-Id", required = false) Long userId) {
+        return Result.success(nodeLoadService.assign(userId));
     }
 
 }
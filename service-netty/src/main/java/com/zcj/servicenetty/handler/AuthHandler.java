@@ -1,24 +1,36 @@
 package com.zcj.servicenetty.handler;
 
 import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
+import com.zcj.servicenetty.service.NettyServerChannelInitializer;
 import com.zcj.common.utils.NetUtil;
 import com.zcj.servicenetty.service.ChannelManager;
 import com.zcj.common.utils.JWTUtil;
 import com.zcj.servicenetty.service.MessageRouterService;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import lombok.Data;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 连接验证处理器
+ * <p>
+ * token 验证在独立的验证线程池中执行，期间暂停读取；验证完成后回到事件循环绑定连接并恢复读取
  */
 @Slf4j
 @Component
@@ -27,18 +39,29 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
 
     private final JWTUtil jwtUtil;
     private final ChannelManager channelManager;
-    private final StringRedisTemplate redisTemplate;
+    private final MessageRouterService messageRouterService;
+    private final NettyProperties nettyProperties;
+    private final ExecutorService authExecutor;
 
+    @Getter
     @Setter
     private static String localAddr;
     private boolean isLogin = false;
+    // 验证进行中（token在验证线程池中校验）
+    private boolean authenticating = false;
+    // 验证进行中收到的消息
+    private final Queue<Protocol> pendingFrames = new ArrayDeque<>();
 
     public AuthHandler(JWTUtil jwtUtil,
                        ChannelManager channelManager,
-                       StringRedisTemplate redisTemplate) throws SocketException {
+                       MessageRouterService messageRouterService,
+                       NettyProperties nettyProperties,
+                       @Qualifier("authExecutor") ExecutorService authExecutor) throws SocketException {
         this.jwtUtil = jwtUtil;
         this.channelManager = channelManager;
-        this.redisTemplate = redisTemplate;
+        this.messageRouterService = messageRouterService;
+        this.nettyProperties = nettyProperties;
+        this.authExecutor = authExecutor;
     }
 
     /**
@@ -47,26 +70,45 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof Protocol protocol) {
-            if (isLogin && !protocol.hasType(Protocol.ORDER_AUTH)) {
+            if (isLogin && !protocol.isOrder(Protocol.ORDER_AUTH)) {
                 // 已经验证通过，放行
                 ctx.fireChannelRead(msg);
-            } else if (protocol.hasType(Protocol.ORDER_AUTH)) {
+            } else if (isLogin || authenticating && protocol.isOrder(Protocol.ORDER_AUTH)) {
+                // 重复的验证请求，忽略
+                log.debug("连接已验证，忽略重复的验证请求");
+            } else if (authenticating) {
+                // 验证进行中：暂停读取前已解码的帧先缓存，验证通过后按序放行
+                if (pendingFrames.size() >= nettyProperties.getAuth().getMaxPendingFrames()) {
+                    log.warn("验证完成前缓存的消息过多，关闭连接");
+                    ctx.close();
+                    return;
+                }
+                pendingFrames.add(protocol);
+            } else if (protocol.isOrder(Protocol.ORDER_AUTH)) {
+                // 1. 解析用户ID和token（实际场景应从消息体中解析）
+                Long userId = protocol.getFromId();  // 假设发送者ID为用户ID
+                String token = protocol.getMessageString();  // 假设消息体为token
+                // 2. 协议版本协商：以 v2 格式发送验证请求的客户端，下行也使用 v2
+                if (protocol.getVersion() == ProtocolV2Codec.VERSION) {
+                    ctx.channel().attr(ProtocolV2Codec.VERSION_ATTR).set(ProtocolV2Codec.VERSION);
+                }
+                // 3. 暂停读取，在验证线程池中验证token，不阻塞事件循环
+                authenticating = true;
+                ctx.channel().config().setAutoRead(false);
                 try {
-                    // 1. 解析用户ID和token（实际场景应从消息体中解析）
-                    Long userId = protocol.getFromId();  // 假设发送者ID为用户ID
-                    String token = protocol.getMessageString();  // 假设消息体为token
-                    // 2. 验证token
-                    boolean valid = validateToken(userId, token);
-                    if (!valid) throw new RuntimeException("用户身份验证失败");
-                    // 3. 验证通过：绑定用户ID与Channel
-                    log.info("用户 {} 验证通过，绑定连接", userId);
-                    channelManager.bind(userId, ctx.channel());
-                    // 4. 注册用户-服务路由
-                    redisTemplate.opsForHash().put(MessageRouterService.USER_ROUTE_KEY,
-                                    userId.toString(), localAddr);
-                    isLogin = true;
-                } catch (Exception e) {
-                    log.warn("验证发生错误，关闭连接; cause: {}", e.toString());
+                    authExecutor.execute(() -> {
+                        Map<String, Object> payload = null;
+                        try {
+                            payload = validateToken(userId, token);
+                        } catch (Exception e) {
+                            log.warn("验证发生错误; cause: {}", e.toString());
+                        }
+                        Map<String, Object> result = payload;
+                        // 4. 回到连接所在的事件循环完成绑定
+                        ctx.executor().execute(() -> completeAuth(ctx, userId, result));
+                    });
+                } catch (RejectedExecutionException e) {
+                    log.warn("验证任务过多，拒绝连接");
                     ctx.close();
                 }
             } else {
@@ -80,14 +122,73 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
     }
 
     /**
-     * 实际的token验证逻辑
+     * 验证完成（在事件循环中执行）：绑定连接、注册路由、恢复读取
      */
-    private boolean validateToken(Long userId, String token) {
-        Object id = jwtUtil.getClaimIfValid(token, "userId");
+    private void completeAuth(ChannelHandlerContext ctx, Long userId, Map<String, Object> payload) {
+        authenticating = false;
+        if (!ctx.channel().isActive()) {
+            // 验证期间连接已关闭，无需绑定
+            pendingFrames.clear();
+            return;
+        }
+        if (payload == null) {
+            log.warn("用户 {} 身份验证失败，关闭连接", userId);
+            pendingFrames.clear();
+            ctx.close();
+            return;
+        }
+        try {
+            // 验证通过：绑定用户ID与Channel（同一设备重复登录时替换旧连接）
+            log.info("用户 {} 验证通过，绑定连接", userId);
+            Channel replaced = channelManager.bind(userId, deviceOf(payload), ctx.channel());
+            if (replaced != null) {
+                // 旧连接已被替换，设备数不变，直接关闭
+                log.info("用户 {} 同一设备重复登录，关闭旧连接", userId);
+                replaced.close();
+            } else {
+                // 注册用户-服务路由（设备数+1，批量异步写入Redis）
+                messageRouterService.register(userId);
+            }
+            // 按平台设置心跳超时
+            int readerIdle = nettyProperties.getHeartbeat().getReaderIdleTimeout((String) payload.get("platform"));
+            ctx.pipeline().replace(NettyServerChannelInitializer.IDLE_HANDLER, NettyServerChannelInitializer.IDLE_HANDLER,
+                    new IdleStateHandler(readerIdle, 0, 0, TimeUnit.SECONDS));
+            isLogin = true;
+        } catch (Exception e) {
+            log.warn("验证发生错误，关闭连接; cause: {}", e.toString());
+            pendingFrames.clear();
+            ctx.close();
+            return;
+        }
+        // 放行验证期间缓存的消息，恢复读取
+        Protocol frame;
+        while ((frame = pendingFrames.poll()) != null) {
+            ctx.fireChannelRead(frame);
+        }
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    /**
+     * 实际的token验证逻辑，验证通过返回token载荷，否则返回null
+     */
+    private Map<String, Object> validateToken(Long userId, String token) {
+        Map<String, Object> payload = jwtUtil.getPayloadIfValid(token);
+        if (payload == null) return null;
+        Object id = payload.get("userId");
         if (id instanceof Integer) {
-            return userId.equals(((Integer) id).longValue());
+            id = ((Integer) id).longValue();
         }
-        return userId.equals(id);
+        return userId.equals(id) ? payload : null;
+    }
+
+    /**
+     * 设备标识：平台:设备哈希（旧token中没有设备信息时返回null，视为独立设备）
+     */
+    private String deviceOf(Map<String, Object> payload) {
+        Object platform = payload.get("platform");
+        Object deviceHash = payload.get("deviceHash");
+        if (platform == null && deviceHash == null) return null;
+        return platform + ":" + deviceHash;
     }
 
     /**
@@ -95,12 +196,11 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
      */
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
-        // 清除本地连接数据
+        // 清除本地连接数据（已被同设备新连接替换的旧连接返回null）
         Long userId = channelManager.unbind(ctx.channel());
         // 清除redis用户连接数据
         if (userId != null) {
-            redisTemplate.opsForHash().delete(MessageRouterService.USER_ROUTE_KEY,
-                    userId.toString());
+            messageRouterService.unregister(userId);
         }
         log.debug("连接关闭，已解除用户绑定");
     }
@@ -113,8 +213,7 @@ public class AuthHandler extends ChannelInboundHandlerAdapter {
         log.error("验证过程发生异常", cause);
         Long userId = channelManager.unbind(ctx.channel());
         if (userId != null) {
-            redisTemplate.opsForHash().delete(MessageRouterService.USER_ROUTE_KEY,
-                    userId.toString());
+            messageRouterService.unregister(userId);
         }
         ctx.close();
     }
@@ -0,0 +1,80 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 分片重组处理器（每个连接一个实例）
+ * <p>
+ * 超过单帧上限的内容由客户端拆成多个帧发送：除最后一帧外都带 FLAG_CONTINUATION，
+ * 所有分片的 identityId 相同。同一时间每个连接只允许一条消息处于分片状态，
+ * 重组期间其他非分片帧（心跳、ACK 等）照常放行；重组后的长度超过上限，
+ * 或出现不属于当前消息的分片帧时关闭连接，因此每个连接最多占用 maxMessageLength 字节。
+ */
+@Slf4j
+public class ChunkAggregator extends ChannelInboundHandlerAdapter {
+
+    private final int maxMessageLength;
+
+    // 正在重组的消息
+    private long identityId;
+    private int type;
+    private ByteArrayOutputStream buffer;
+
+    public ChunkAggregator(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Protocol protocol) || (buffer == null && !protocol.isContinuation())) {
+            // 非分片消息，直接放行
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (buffer == null) {
+            // 第一个分片
+            identityId = protocol.getIdentityId();
+            type = protocol.getType() & ~Protocol.FLAG_MASK;
+            buffer = new ByteArrayOutputStream(Math.min(maxMessageLength, protocol.getLength() * 2));
+        } else if (protocol.getIdentityId() != identityId || (protocol.getType() & ~Protocol.FLAG_MASK) != type) {
+            if (protocol.isContinuation()) {
+                fail(ctx, "分片交错");
+            } else {
+                // 不属于当前消息的普通帧
+                ctx.fireChannelRead(msg);
+            }
+            return;
+        }
+        if (buffer.size() + protocol.getLength() > maxMessageLength) {
+            fail(ctx, "重组后的消息超过上限 " + maxMessageLength);
+            return;
+        }
+        if (protocol.getContent() != null) {
+            buffer.write(protocol.getContent(), 0, protocol.getLength());
+        }
+        if (protocol.isContinuation()) {
+            return;
+        }
+        // 最后一个分片：以它的帧头为准，填入完整内容后继续传递
+        protocol.setContent(buffer.toByteArray());
+        buffer = null;
+        ctx.fireChannelRead(protocol);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        buffer = null;
+        super.channelInactive(ctx);
+    }
+
+    private void fail(ChannelHandlerContext ctx, String reason) {
+        log.warn("分片消息非法，关闭连接: {}, identityId={}", reason, identityId);
+        buffer = null;
+        ctx.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 心跳处理器
+ * 应答客户端的 PING；IdleStateHandler 触发读空闲时关闭连接（半开连接、客户端失联），
+ * 关闭后由 AuthHandler.channelInactive 清理绑定与路由
+ */
+@Component
+@ChannelHandler.Sharable
+@Slf4j
+public class HeartbeatHandler extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Protocol protocol && protocol.isOrder(Protocol.ORDER_HEARTBEAT)) {
+            if (protocol.getContentType() == Protocol.HEARTBEAT_PING) {
+                Protocol pong = new Protocol();
+                pong.setType(Protocol.ORDER_HEARTBEAT, Protocol.HEARTBEAT_PONG);
+                pong.setTimeStamp(System.currentTimeMillis());
+                ctx.writeAndFlush(pong);
+            }
+            // 心跳不再向后传递
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent event && event.state() == IdleState.READER_IDLE) {
+            log.debug("连接读空闲超时，关闭连接: {}", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+}
@@ -57,7 +57,7 @@ public class MessageHandler extends ChannelInboundHandlerAdapter {
      */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        if (msg instanceof Protocol protocol && protocol.hasType(Protocol.ORDER_MESSAGE)) {
+        if (msg instanceof Protocol protocol && protocol.isOrder(Protocol.ORDER_MESSAGE)) {
             try {
                 log.debug("[MessageHandler]: come [{}]", protocol.getMessageString());
                 int originalLength = protocol.getLength();
@@ -90,7 +90,7 @@ public class MessageHandler extends ChannelInboundHandlerAdapter {
                         // 将错误写入日志，方便恢复数据
                         log.info("[消息已丢失, 需填充空消息]: sessionId: {}, messageId: {}", chatMessage.getSessionId(), chatMessage.getMessageId());
                         protocol.setContent("消息队列异常");
-                        protocol.setType(Protocol.ORDER_ACK + Protocol.CONTENT_FAILED);
+                        protocol.setType(Protocol.ORDER_ACK, Protocol.CONTENT_FAILED);
                         ctx.writeAndFlush(protocol);
                     } else {
                         // 向发送者返回 ACK 成功应答
@@ -103,8 +103,8 @@ public class MessageHandler extends ChannelInboundHandlerAdapter {
                 // 业务等待超时，服务器异常
                 log.debug("[sendMessageToQueue]: 锁等待超时");
                 protocol.setContent(e.getMessage());
-                protocol.setType(Protocol.ORDER_ACK + Protocol.CONTENT_FAILED);
-                ctx.writeAndFlush(protocol.toBuffer(ctx.alloc().buffer()));
+                protocol.setType(Protocol.ORDER_ACK, Protocol.CONTENT_FAILED);
+                ctx.writeAndFlush(protocol);
             }
 
         } else {
@@ -0,0 +1,90 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 端口复用处理器（每个连接一个实例）
+ * <p>
+ * 根据连接的前两个字节选择协议栈，之后把自己从管道中移除：
+ * 1. 协议魔数：原生TCP客户端，直接安装帧解码器；
+ * 2. HTTP GET：浏览器客户端，安装 HTTP 编解码与 WebSocket 握手，
+ *    握手完成后二进制帧的内容按原生协议的字节流解码；其他路径的 HTTP 请求返回 404 并关闭连接。
+ * 两种连接在帧解码之后得到相同的 Protocol 对象，共用验证、幂等与消息处理器及连接注册表。
+ */
+@Slf4j
+public class PortUnificationHandler extends ByteToMessageDecoder {
+
+    private final NettyProperties nettyProperties;
+    private final ProtocolEncoder protocolEncoder;
+
+    public PortUnificationHandler(NettyProperties nettyProperties, ProtocolEncoder protocolEncoder) {
+        this.nettyProperties = nettyProperties;
+        this.protocolEncoder = protocolEncoder;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < 2) {
+            return;
+        }
+        int start = in.readerIndex();
+        ChannelPipeline pipeline = ctx.pipeline();
+        String name = ctx.name();
+        if (in.getShort(start) == Protocol.MAGIC_NUMBER) {
+            pipeline.addAfter(name, "protocolEncoder", protocolEncoder);
+            pipeline.addAfter(name, "protocolDecoder", new ProtocolFrameDecoder(nettyProperties.getFrame()));
+        } else if (nettyProperties.getWebsocket().isEnabled()
+                && in.getByte(start) == 'G' && in.getByte(start + 1) == 'E') {
+            NettyProperties.Websocket websocket = nettyProperties.getWebsocket();
+            // WebSocket 帧的上限与原生协议一致：帧头 + 所有命令中最大的消息体
+            int maxFrameSize = Protocol.LengthFiledBias + 4 + nettyProperties.getFrame().getMaxFrameLengthOfAll();
+            // 按倒序插入到当前处理器之后
+            pipeline.addAfter(name, "protocolEncoder", protocolEncoder);
+            pipeline.addAfter(name, "protocolDecoder", new ProtocolFrameDecoder(nettyProperties.getFrame()));
+            pipeline.addAfter(name, "webSocketFrameCodec", new WebSocketFrameCodec());
+            pipeline.addAfter(name, "httpReject", HttpRejectHandler.INSTANCE);
+            pipeline.addAfter(name, "webSocketHandler",
+                    new WebSocketServerProtocolHandler(websocket.getPath(), null, true, maxFrameSize));
+            pipeline.addAfter(name, "httpAggregator", new HttpObjectAggregator(websocket.getMaxHandshakeLength()));
+            pipeline.addAfter(name, "httpCodec", new HttpServerCodec());
+        } else {
+            log.warn("无法识别的连接协议，关闭连接: {}", ctx.channel().remoteAddress());
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
+        }
+        // 移除自己，已缓存的字节交给新安装的解码器
+        pipeline.remove(this);
+    }
+
+    /**
+     * 拒绝非 WebSocket 握手路径的 HTTP 请求（WebSocketServerProtocolHandler 会把它们原样传递下来）
+     */
+    @ChannelHandler.Sharable
+    static class HttpRejectHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        static final HttpRejectHandler INSTANCE = new HttpRejectHandler();
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            log.warn("非WebSocket路径的HTTP请求，关闭连接: {}, remote={}", request.uri(), ctx.channel().remoteAddress());
+            FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.NOT_FOUND);
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            HttpUtil.setContentLength(response, 0);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -1,20 +1,31 @@
 package com.zcj.servicenetty.handler;
 
 import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 @Component
 @ChannelHandler.Sharable
 @Slf4j
+@RequiredArgsConstructor
 public class ProtocolEncoder extends MessageToByteEncoder<Protocol> {
+
+    private final NettyProperties nettyProperties;
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Protocol msg, ByteBuf out) throws Exception {
-        log.info("消息发送: [{}]", msg);
-        msg.toBuffer(out);
+        log.debug("消息发送: [{}]", msg);
+        // 按连接验证时协商的版本编码
+        if (ProtocolV2Codec.versionOf(ctx.channel()) == ProtocolV2Codec.VERSION) {
+            ProtocolV2Codec.encode(ctx.channel(), msg, out, nettyProperties.getFrame().getCompressThreshold());
+        } else {
+            msg.toBuffer(out);
+        }
     }
 }
@@ -1,13 +1,20 @@
 package com.zcj.servicenetty.handler;
 
 import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Exception;
 
+/**
+ * 协议帧解码器（按帧头中的版本号分发 v1/v2）
+ * 在读到帧头（魔数、类型、长度）后立即按命令类型检查长度，超限直接关闭连接，不缓存消息体
+ */
+@Slf4j
 public class ProtocolFrameDecoder extends LengthFieldBasedFrameDecoder {
-    // 最大消息长度（考虑到length是int类型）
-    private static final int MAX_FRAME_LENGTH = Integer.MAX_VALUE;
     // length字段的偏移量
     private static final int LENGTH_FIELD_OFFSET = Protocol.LengthFiledBias;
     // length字段本身占用4字节（int类型）
@@ -16,41 +23,94 @@ public class ProtocolFrameDecoder extends LengthFieldBasedFrameDecoder {
     private static final int LENGTH_ADJUSTMENT = 0;
     // 需要跳过的初始字节数：0（我们需要验证魔数）
     private static final int INITIAL_BYTES_TO_STRIP = 0;
+    // 帧头长度
+    private static final int HEADER_LENGTH = LENGTH_FIELD_OFFSET + LENGTH_FIELD_LENGTH;
+    // 类型字段的偏移量：魔数(2) + 版本(2)
+    private static final int TYPE_FIELD_OFFSET = 4;
 
-    public ProtocolFrameDecoder() {
-        super(MAX_FRAME_LENGTH, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH,
+    private final NettyProperties.Frame frameProperties;
+    // v2 上行方向上一帧的时间戳（时间戳增量解码基准）
+    private final long[] inboundTimestamp = new long[1];
+
+    public ProtocolFrameDecoder(NettyProperties.Frame frameProperties) {
+        // 最大帧长度 = 帧头 + 所有命令中最大的消息体长度
+        super(HEADER_LENGTH + frameProperties.getMaxFrameLengthOfAll(), LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH,
                 LENGTH_ADJUSTMENT, INITIAL_BYTES_TO_STRIP);
+        this.frameProperties = frameProperties;
     }
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
 
-        // 1. 调用父类解码获取完整帧（父类已处理缓冲区引用计数）
+        // 1. 提前检查帧头：魔数错误或长度超限时不再等待消息体
+        int start = in.readerIndex();
+        if (in.readableBytes() >= 2 && in.getShort(start) != Protocol.MAGIC_NUMBER) {
+            return reject(ctx, in, "魔数不匹配");
+        }
+        // 按版本分发：v2 为变长帧头，其余按 v1 处理
+        if (in.readableBytes() >= 4 && in.getShort(start + 2) == ProtocolV2Codec.VERSION) {
+            return decodeV2(ctx, in);
+        }
+        if (in.readableBytes() >= HEADER_LENGTH) {
+            int type = in.getInt(start + TYPE_FIELD_OFFSET);
+            int length = in.getInt(start + LENGTH_FIELD_OFFSET);
+            int limit = frameProperties.getMaxFrameLength(type);
+            if (length < 0 || length > limit) {
+                return reject(ctx, in, String.format("消息体长度超限: type=0x%x, 声明: %d, 上限: %d",
+                        type, length, limit));
+            }
+        }
+
+        // 2. 调用父类解码获取完整帧（父类已处理缓冲区引用计数）
         ByteBuf frame = (ByteBuf) super.decode(ctx, in);
         if (frame == null) {
             return null; // 帧不完整
         }
 
         try {
-            // 2. 验证魔数（读取前先检查缓冲区是否有足够字节）
-            if (frame.readableBytes() < 2) {
-                ctx.close();
-                return null;
-            }
-            int magic = frame.readShort();
-            if (magic != Protocol.MAGIC_NUMBER) {
-                ctx.close(); // 魔数不匹配，关闭连接
-                return null;
-            }
-
-            // 3. 重置读指针，确保fromBuffer能从头读取
-            frame.resetReaderIndex();
-
-            // 4. 转换为Protocol对象（确保fromBuffer内部不会释放frame）
+            // 3. 转换为Protocol对象（确保fromBuffer内部不会释放frame）
             return Protocol.fromBuffer(frame);
         } finally {
-            // 5. 释放frame（父类返回的frame需要手动释放，避免泄漏）
+            // 4. 释放frame（父类返回的frame需要手动释放，避免泄漏）
             frame.release();
         }
     }
+
+    private Object decodeV2(ChannelHandlerContext ctx, ByteBuf in) {
+        int start = in.readerIndex();
+        // 帧头的变长整数与帧体的格式错误都走拒绝并关闭连接
+        try {
+            long lengthField = ProtocolV2Codec.peekVarint32(in, start + 4);
+            if (lengthField < 0) return null;
+            int lengthSize = (int) (lengthField >>> 32);
+            int frameLength = (int) lengthField;
+            if (frameLength < 2 || frameLength > frameProperties.getMaxFrameLengthOfAll() + ProtocolV2Codec.MAX_HEADER_LENGTH) {
+                return reject(ctx, in, "v2帧长度超限: " + frameLength);
+            }
+            long typeField = ProtocolV2Codec.peekVarint32(in, start + 4 + lengthSize);
+            if (typeField < 0) return null;
+            int typeSize = (int) (typeField >>> 32);
+            int type = (int) typeField;
+            int limit = frameProperties.getMaxFrameLength(type);
+            if (typeSize >= frameLength || frameLength > limit + ProtocolV2Codec.MAX_HEADER_LENGTH) {
+                return reject(ctx, in, String.format("v2帧长度超限: type=0x%x, 帧长度: %d, 上限: %d",
+                        type, frameLength, limit));
+            }
+            if (in.readableBytes() < 4 + lengthSize + frameLength) {
+                return null; // 帧不完整
+            }
+            in.skipBytes(4 + lengthSize + typeSize);
+            ByteBuf frame = in.readSlice(frameLength - typeSize);
+            return ProtocolV2Codec.decode(frame, type, inboundTimestamp, limit);
+        } catch (CorruptedFrameException | IndexOutOfBoundsException | LZ4Exception e) {
+            return reject(ctx, in, "v2帧格式错误: " + e.getMessage());
+        }
+    }
+
+    private Object reject(ChannelHandlerContext ctx, ByteBuf in, String reason) {
+        log.warn("非法帧，关闭连接: {}, remote={}", reason, ctx.channel().remoteAddress());
+        in.skipBytes(in.readableBytes());
+        ctx.close();
+        return null;
+    }
 }
@@ -0,0 +1,233 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.AttributeKey;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * 协议 v2 编解码
+ * <p>
+ * 帧格式：魔数(2) + 版本(2)=2 + 帧长度(varint，之后的字节数) + 类型(varint) + 字段标志(1)
+ * + [fromId] + [identityId] + [sessionId] + [messageId] + [时间戳增量] + 消息体
+ * <p>
+ * 值为0的ID与时间戳不写入（由字段标志表示），ID 使用 zigzag varint，
+ * 时间戳为相对本连接同方向上一帧时间戳的增量；消息体超过阈值时使用 LZ4 压缩，
+ * 压缩后的消息体前写入原始长度(varint)。
+ * <p>
+ * 版本在验证时协商：客户端以 v2 格式发送 ORDER_AUTH，服务端之后的下行帧也使用 v2；
+ * 以 v1 发送验证请求的旧客户端保持 v1。
+ */
+public final class ProtocolV2Codec {
+
+    public static final short VERSION = 2;
+
+    // 连接协商的协议版本（未设置为 v1）
+    public static final AttributeKey<Short> VERSION_ATTR = AttributeKey.newInstance("protocolVersion");
+    // 下行方向上一帧的时间戳（时间戳增量编码基准）
+    private static final AttributeKey<long[]> OUTBOUND_TIMESTAMP_ATTR = AttributeKey.newInstance("outboundTimestamp");
+
+    // 字段标志
+    private static final int FIELD_FROM_ID = 0x01;
+    private static final int FIELD_IDENTITY_ID = 0x02;
+    private static final int FIELD_SESSION_ID = 0x04;
+    private static final int FIELD_MESSAGE_ID = 0x08;
+    private static final int FIELD_TIMESTAMP = 0x10;
+    private static final int BODY_LZ4 = 0x20;
+
+    // v2 帧头（不含消息体）的最大长度：魔数 + 版本 + 帧长度 + 类型 + 字段标志 + 5个varint64 + 原始长度
+    public static final int MAX_HEADER_LENGTH = 2 + 2 + 5 + 5 + 1 + 5 * 10 + 5;
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private ProtocolV2Codec() {
+    }
+
+    public static short versionOf(Channel channel) {
+        Short version = channel.attr(VERSION_ATTR).get();
+        return version != null ? version : 1;
+    }
+
+    /**
+     * 编码为 v2 帧
+     * @param compressThreshold 消息体达到该长度时尝试压缩
+     */
+    public static void encode(Channel channel, Protocol protocol, ByteBuf out, int compressThreshold) {
+        protocol.calculateLength();
+        byte[] body = protocol.getContent();
+        int bodyLength = protocol.getLength();
+        int flags = 0;
+        int originalLength = bodyLength;
+        if (bodyLength >= compressThreshold) {
+            byte[] compressed = COMPRESSOR.compress(body, 0, bodyLength);
+            if (compressed.length + varintSize(bodyLength) < bodyLength) {
+                body = compressed;
+                bodyLength = compressed.length;
+                flags |= BODY_LZ4;
+            }
+        }
+
+        long[] lastTimestamp = channel.attr(OUTBOUND_TIMESTAMP_ATTR).get();
+        if (lastTimestamp == null) {
+            lastTimestamp = new long[1];
+            channel.attr(OUTBOUND_TIMESTAMP_ATTR).set(lastTimestamp);
+        }
+        long timeDelta = protocol.getTimeStamp() - lastTimestamp[0];
+
+        if (protocol.getFromId() != 0) flags |= FIELD_FROM_ID;
+        if (protocol.getIdentityId() != 0) flags |= FIELD_IDENTITY_ID;
+        if (protocol.getSessionId() != 0) flags |= FIELD_SESSION_ID;
+        if (protocol.getMessageId() != 0) flags |= FIELD_MESSAGE_ID;
+        if (protocol.getTimeStamp() != 0) {
+            flags |= FIELD_TIMESTAMP;
+            lastTimestamp[0] = protocol.getTimeStamp();
+        }
+
+        int frameLength = varintSize(protocol.getType()) + 1
+                + ((flags & FIELD_FROM_ID) != 0 ? varintSize(zigzag(protocol.getFromId())) : 0)
+                + ((flags & FIELD_IDENTITY_ID) != 0 ? varintSize(zigzag(protocol.getIdentityId())) : 0)
+                + ((flags & FIELD_SESSION_ID) != 0 ? varintSize(zigzag(protocol.getSessionId())) : 0)
+                + ((flags & FIELD_MESSAGE_ID) != 0 ? varintSize(zigzag(protocol.getMessageId())) : 0)
+                + ((flags & FIELD_TIMESTAMP) != 0 ? varintSize(zigzag(timeDelta)) : 0)
+                + ((flags & BODY_LZ4) != 0 ? varintSize(originalLength) : 0)
+                + bodyLength;
+
+        out.writeShort(Protocol.MAGIC_NUMBER);
+        out.writeShort(VERSION);
+        writeVarint(out, frameLength);
+        writeVarint(out, protocol.getType());
+        out.writeByte(flags);
+        if ((flags & FIELD_FROM_ID) != 0) writeVarint(out, zigzag(protocol.getFromId()));
+        if ((flags & FIELD_IDENTITY_ID) != 0) writeVarint(out, zigzag(protocol.getIdentityId()));
+        if ((flags & FIELD_SESSION_ID) != 0) writeVarint(out, zigzag(protocol.getSessionId()));
+        if ((flags & FIELD_MESSAGE_ID) != 0) writeVarint(out, zigzag(protocol.getMessageId()));
+        if ((flags & FIELD_TIMESTAMP) != 0) writeVarint(out, zigzag(timeDelta));
+        if ((flags & BODY_LZ4) != 0) writeVarint(out, originalLength);
+        if (bodyLength > 0) out.writeBytes(body, 0, bodyLength);
+    }
+
+    /**
+     * 解码一个完整的 v2 帧（frame 从帧长度字段之后开始，到帧结束为止）
+     * @param lastTimestamp   上行方向上一帧的时间戳，解码后更新
+     * @param maxBodyLength   消息体（压缩时为压缩前后两者）的最大长度，帧头解析完后才能确定消息体长度
+     */
+    public static Protocol decode(ByteBuf frame, int type, long[] lastTimestamp, int maxBodyLength) {
+        Protocol protocol = new Protocol();
+        protocol.setVersion(VERSION);
+        protocol.setType(type);
+        int flags = frame.readUnsignedByte();
+        if ((flags & FIELD_FROM_ID) != 0) protocol.setFromId(unzigzag(readVarint64(frame)));
+        if ((flags & FIELD_IDENTITY_ID) != 0) protocol.setIdentityId(unzigzag(readVarint64(frame)));
+        if ((flags & FIELD_SESSION_ID) != 0) protocol.setSessionId(unzigzag(readVarint64(frame)));
+        if ((flags & FIELD_MESSAGE_ID) != 0) protocol.setMessageId(unzigzag(readVarint64(frame)));
+        if ((flags & FIELD_TIMESTAMP) != 0) {
+            long timestamp = lastTimestamp[0] + unzigzag(readVarint64(frame));
+            lastTimestamp[0] = timestamp;
+            protocol.setTimeStamp(timestamp);
+        }
+        if ((flags & BODY_LZ4) != 0) {
+            int originalLength = readVarint32(frame);
+            if (originalLength < 0 || originalLength > maxBodyLength) {
+                throw new CorruptedFrameException("解压后消息体长度超限: " + originalLength);
+            }
+            checkBodyLength(frame, maxBodyLength);
+            byte[] compressed = new byte[frame.readableBytes()];
+            frame.readBytes(compressed);
+            byte[] body = DECOMPRESSOR.decompress(compressed, 0, compressed.length, originalLength);
+            if (body.length != originalLength) {
+                throw new CorruptedFrameException("解压后消息体长度不一致");
+            }
+            protocol.setContent(body);
+        } else {
+            checkBodyLength(frame, maxBodyLength);
+            protocol.setContent(frame);
+        }
+        return protocol;
+    }
+
+    /**
+     * 帧长度的预检查只能按帧头最大长度放宽，帧头较短时消息体可能超出该指令的上限（如心跳携带消息体）
+     */
+    private static void checkBodyLength(ByteBuf frame, int maxBodyLength) {
+        if (frame.readableBytes() > maxBodyLength) {
+            throw new CorruptedFrameException("消息体长度超限: " + frame.readableBytes() + ", 上限: " + maxBodyLength);
+        }
+    }
+
+    // ==================== varint ====================
+
+    /**
+     * 在不移动读指针的情况下读取 varint32
+     * @return 值与所占字节数（高32位为字节数），数据不完整时返回 -1
+     */
+    public static long peekVarint32(ByteBuf buf, int index) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            if (index + i >= buf.writerIndex()) return -1;
+            byte b = buf.getByte(index + i);
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return ((long) (i + 1) << 32) | (value & 0xFFFFFFFFL);
+            }
+        }
+        throw new CorruptedFrameException("varint32 格式错误");
+    }
+
+    public static int readVarint32(ByteBuf buf) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0) return value;
+        }
+        throw new CorruptedFrameException("varint32 格式错误");
+    }
+
+    private static long readVarint64(ByteBuf buf) {
+        long value = 0;
+        for (int i = 0; i < 10; i++) {
+            byte b = buf.readByte();
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0) return value;
+        }
+        throw new CorruptedFrameException("varint64 格式错误");
+    }
+
+    private static void writeVarint(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void writeVarint(ByteBuf out, int value) {
+        writeVarint(out, value & 0xFFFFFFFFL);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private static int varintSize(int value) {
+        return varintSize(value & 0xFFFFFFFFL);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.common.utils.RedisRateLimiter;
+import com.zcj.servicenetty.config.NettyProperties;
+import com.zcj.servicenetty.service.ChannelManager;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 消息限流处理器
+ * <p>
+ * 每个连接一个本地令牌桶（挡住单连接的突发洪水），同时按用户使用集群全局预算
+ * （同一用户的多个设备、多个节点共享）。超限的消息直接回复失败ACK并丢弃，
+ * 连续超限过多的连接视为异常客户端并关闭。
+ */
+@Component
+@ChannelHandler.Sharable
+@Slf4j
+public class RateLimitHandler extends ChannelInboundHandlerAdapter {
+
+    private static final AttributeKey<Bucket> BUCKET_ATTR = AttributeKey.newInstance("rateLimitBucket");
+
+    private final ChannelManager channelManager;
+    private final NettyProperties.RateLimit config;
+    private final RedisRateLimiter userLimiter;
+
+    public RateLimitHandler(ChannelManager channelManager,
+                            NettyProperties nettyProperties,
+                            StringRedisTemplate redisTemplate) {
+        this.channelManager = channelManager;
+        this.config = nettyProperties.getRateLimit();
+        this.userLimiter = new RedisRateLimiter(redisTemplate, "netty:user",
+                config.getUserRate(), config.getUserCapacity(), config.getUserBatch());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof Protocol protocol) || !protocol.isOrder(Protocol.ORDER_MESSAGE)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        Bucket bucket = ctx.channel().attr(BUCKET_ATTR).get();
+        if (bucket == null) {
+            bucket = new Bucket(config.getChannelRate(), config.getChannelCapacity());
+            ctx.channel().attr(BUCKET_ATTR).set(bucket);
+        }
+        Long userId = channelManager.getUserId(ctx.channel());
+        if (bucket.tryTake() && (userId == null || userLimiter.tryAcquire(userId.toString()))) {
+            bucket.rejected = 0;
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (++bucket.rejected > config.getMaxRejected()) {
+            log.warn("连接连续超限 {} 次，关闭连接: userId={}", bucket.rejected, userId);
+            ctx.close();
+            return;
+        }
+        protocol.setContent("发送过于频繁");
+        protocol.setType(Protocol.ORDER_ACK, Protocol.CONTENT_FAILED);
+        ctx.writeAndFlush(protocol);
+    }
+
+    /**
+     * 连接内的令牌桶（只在该连接的事件循环中访问，无需同步）
+     */
+    private static final class Bucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private int rejected;
+
+        private Bucket(double ratePerSecond, int capacity) {
+            this.ratePerNano = ratePerSecond / 1_000_000_000d;
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        private boolean tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+}
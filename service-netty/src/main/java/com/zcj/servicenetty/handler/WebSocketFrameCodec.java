@@ -0,0 +1,41 @@
+package com.zcj.servicenetty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * WebSocket 二进制帧与字节流的转换（每个连接一个实例）
+ * <p>
+ * 上行：二进制帧（及其后续的分段帧）的内容原样交给 ProtocolFrameDecoder，
+ * 一个 WebSocket 帧可以包含多个或半个协议帧；
+ * 下行：ProtocolEncoder 编码后的字节包装为二进制帧。
+ * 文本帧不属于协议，收到时关闭连接；Ping/Pong/Close 由 WebSocketServerProtocolHandler 处理。
+ */
+@Slf4j
+public class WebSocketFrameCodec extends MessageToMessageCodec<WebSocketFrame, ByteBuf> {
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        out.add(new BinaryWebSocketFrame(msg.retain()));
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame frame, List<Object> out) {
+        if (frame instanceof BinaryWebSocketFrame || frame instanceof ContinuationWebSocketFrame) {
+            out.add(frame.content().retain());
+            return;
+        }
+        log.warn("不支持的WebSocket帧类型，关闭连接: {}, remote={}",
+                frame.getClass().getSimpleName(), ctx.channel().remoteAddress());
+        ctx.writeAndFlush(new CloseWebSocketFrame(1003, "binary frames only"));
+        ctx.close();
+    }
+}
@@ -2,7 +2,9 @@ package com.zcj.servicenetty.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.zcj.common.entity.ChatMessage;
+import com.zcj.common.entity.ChatSession;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -11,8 +13,14 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
     // 查询Session的消息中，最大的消息ID
     Long selectMaxMessageIdInSession(Long sessionId);
 
-    // 查询Session中的所有成员ID
-    List<Long> selectMemberIdsInSession(Long sessionId);
+    // 查询会话信息（类型与双方/群ID）
+    ChatSession selectSessionById(Long sessionId);
+
+    // 查询群聊中未退出的成员ID
+    List<Long> selectGroupMemberIds(Long groupId);
 
     void batchInsert(List<ChatMessage> toSave);
+
+    // 批量更新会话的最后一条消息摘要（覆盖更旧或同一条消息的摘要，撤回后显示占位文本）
+    int updateLastMessage(@Param("list") List<ChatMessage> summaries, @Param("updatedAt") long updatedAt);
 }
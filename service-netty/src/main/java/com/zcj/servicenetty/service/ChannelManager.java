@@ -5,44 +5,89 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * 连接管理器：线程安全地管理用户ID与Channel的映射关系
+ * <p>
+ * 同一用户可以在多个设备同时在线，设备以 平台:设备哈希 区分，同一设备重复登录时替换旧连接。
+ * 映射值为单个 Channel（单设备，绝大多数情况）或 Channel[]（多设备），
+ * 数组只在绑定/解绑时整体替换，读路径无需加锁也无需分配。
  */
 @Component
+@RequiredArgsConstructor
 public class ChannelManager {
-    // 用户ID -> Channel的映射（ConcurrentHashMap确保线程安全）
-    private final Map<Long, Channel> userChannelMap = new ConcurrentHashMap<>();
+    // 用户ID -> Channel 或 Channel[] 的映射（原始long键，避免装箱；单节点20万+连接时内存与缓存命中更友好）
+    private final ConcurrentLongMap<Object> userChannelMap = new ConcurrentLongMap<>(256, 1 << 18);
+    // 已绑定的连接数（所有用户的设备总数）
+    private final AtomicInteger connectionCount = new AtomicInteger();
 
-    // 所有已验证的连接集合（方便广播等操作）
-    private final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final PresenceService presenceService;
 
     // 用户ID属性键（用于Channel绑定用户ID）
-    public final AttributeKey<Long> USER_ID_ATTR = AttributeKey.newInstance("userId");
+    public static final AttributeKey<Long> USER_ID_ATTR = AttributeKey.valueOf("userId");
+    // 设备属性键（平台:设备哈希）
+    public static final AttributeKey<String> DEVICE_ATTR = AttributeKey.valueOf("device");
 
     /**
      * 绑定用户ID与Channel（双向绑定）
      * @param userId 用户唯一标识
+     * @param device 设备标识（平台:设备哈希），为空时视为独立设备
      * @param channel 连接通道
+     * @return 被替换的同设备旧连接，没有则返回null
      */
-    public void bind(Long userId, Channel channel) {
+    public Channel bind(Long userId, String device, Channel channel) {
         if (userId == null || channel == null) {
-            return;
+            return null;
         }
-        // 1. 存储用户ID到Channel的映射
-        userChannelMap.put(userId, channel);
-        // 2. 在Channel上绑定用户ID属性（反向映射）
+        // 1. 在Channel上绑定用户ID与设备属性（反向映射）
         channel.attr(USER_ID_ATTR).set(userId);
-        // 3. 将通道加入全局管理组
-        allChannels.add(channel);
+        channel.attr(DEVICE_ATTR).set(device != null ? device : channel.id().asShortText());
+        // 2. 存储用户ID到Channel的映射（同设备替换，不同设备追加）
+        Channel[] replaced = new Channel[1];
+        userChannelMap.compute(userId, (id, current) -> {
+            if (current == null) {
+                // 用户首个设备上线
+                presenceService.online(id);
+                connectionCount.incrementAndGet();
+                return channel;
+            }
+            Channel[] devices = current instanceof Channel single ? new Channel[]{single} : (Channel[]) current;
+            for (int i = 0; i < devices.length; i++) {
+                if (devices[i] == channel) return current;
+                if (sameDevice(devices[i], channel)) {
+                    replaced[0] = devices[i];
+                    if (devices.length == 1) return channel;
+                    Channel[] copy = devices.clone();
+                    copy[i] = channel;
+                    return copy;
+                }
+            }
+            Channel[] copy = Arrays.copyOf(devices, devices.length + 1);
+            copy[devices.length] = channel;
+            connectionCount.incrementAndGet();
+            return copy;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * 绑定用户ID与Channel（不区分设备）
+     */
+    public void bind(Long userId, Channel channel) {
+        bind(userId, null, channel);
     }
 
     /**
-     * 根据用户ID解除绑定
+     * 根据用户ID解除绑定（该用户的所有设备）
      * @param userId 用户唯一标识
      */
     public void unbind(Long userId) {
@@ -50,38 +95,65 @@ public class ChannelManager {
             return;
         }
         // 1. 从映射中移除并获取对应的Channel
-        Channel channel = userChannelMap.remove(userId);
-        if (channel != null) {
-            // 2. 清除Channel上的用户ID属性
-            channel.attr(USER_ID_ATTR).set(null);
-            // 3. 从全局管理组中移除
-            allChannels.remove(channel);
-        }
+        Object[] removed = new Object[1];
+        userChannelMap.compute(userId, (id, value) -> {
+            if (value != null) {
+                presenceService.offline(id);
+                connectionCount.addAndGet(value instanceof Channel ? -1 : -((Channel[]) value).length);
+            }
+            removed[0] = value;
+            return null;
+        });
+        // 2. 清除Channel上的用户ID属性
+        forEachChannel(removed[0], channel -> channel.attr(USER_ID_ATTR).set(null));
     }
 
     /**
      * 根据Channel解除绑定（连接关闭时调用）
+     * 只移除该Channel自身；该Channel已被同设备的新连接替换时不做任何修改
      * @param channel 连接通道
+     * @return 解除绑定的用户ID，Channel未绑定（或已被替换）时返回null
      */
     public Long unbind(Channel channel) {
         if (channel == null) {
             return null;
         }
         // 1. 从Channel属性中获取用户ID（无需遍历映射）
-        Long userId = channel.attr(USER_ID_ATTR).get();
-        if (userId != null) {
-            // 2. 移除用户ID与Channel的映射
-            userChannelMap.remove(userId);
-            // 3. 清除Channel上的用户ID属性
-            channel.attr(USER_ID_ATTR).set(null);
+        Long userId = channel.attr(USER_ID_ATTR).getAndSet(null);
+        if (userId == null) {
+            return null;
         }
-        // 4. 从全局管理组中移除
-        allChannels.remove(channel);
-        return userId;
+        // 2. 从该用户的设备中移除此Channel
+        boolean[] removed = new boolean[1];
+        userChannelMap.compute(userId, (id, current) -> {
+            if (current == null) return null;
+            if (current instanceof Channel single) {
+                if (single != channel) return current;
+                removed[0] = true;
+                connectionCount.decrementAndGet();
+                // 用户最后一个设备下线
+                presenceService.offline(id);
+                return null;
+            }
+            Channel[] devices = (Channel[]) current;
+            for (int i = 0; i < devices.length; i++) {
+                if (devices[i] == channel) {
+                    removed[0] = true;
+                    connectionCount.decrementAndGet();
+                    if (devices.length == 2) return devices[1 - i];
+                    Channel[] copy = new Channel[devices.length - 1];
+                    System.arraycopy(devices, 0, copy, 0, i);
+                    System.arraycopy(devices, i + 1, copy, i, devices.length - i - 1);
+                    return copy;
+                }
+            }
+            return current;
+        });
+        return removed[0] ? userId : null;
     }
 
     /**
-     * 根据用户ID获取对应的Channel
+     * 根据用户ID获取对应的Channel（多设备时返回任意一个活跃连接）
      * @param userId 用户唯一标识
      * @return 对应的Channel，若不存在或已关闭则返回null
      */
@@ -89,9 +161,70 @@ public class ChannelManager {
         if (userId == null) {
             return null;
         }
-        Channel channel = userChannelMap.get(userId);
-        // 校验通道是否活跃（避免返回已关闭的通道）
-        return (channel != null && channel.isActive()) ? channel : null;
+        Object value = userChannelMap.get(userId);
+        if (value instanceof Channel channel) {
+            // 校验通道是否活跃（避免返回已关闭的通道）
+            return channel.isActive() ? channel : null;
+        }
+        if (value != null) {
+            for (Channel channel : (Channel[]) value) {
+                if (channel.isActive()) return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 向用户在本节点的所有设备发送消息
+     * @param userId 用户唯一标识
+     * @param msg 消息
+     * @return 写出的设备数量，0表示用户不在本节点
+     */
+    public int writeAndFlush(long userId, Object msg) {
+        Object value = userChannelMap.get(userId);
+        if (value == null) {
+            return 0;
+        }
+        // 单设备快速路径
+        if (value instanceof Channel channel) {
+            if (!channel.isActive()) return 0;
+            channel.writeAndFlush(msg);
+            return 1;
+        }
+        int count = 0;
+        for (Channel channel : (Channel[]) value) {
+            if (channel.isActive()) {
+                channel.writeAndFlush(msg);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 批量向用户的所有设备发送同一条消息（用于消息扇出）
+     * @param userIds 用户ID数组
+     * @param msg 消息
+     * @return 写出的设备总数
+     */
+    public int writeAndFlush(long[] userIds, Object msg) {
+        int count = 0;
+        for (long userId : userIds) {
+            count += writeAndFlush(userId, msg);
+        }
+        return count;
+    }
+
+    /**
+     * 用户在本节点的设备数量
+     */
+    public int getDeviceCount(Long userId) {
+        if (userId == null) {
+            return 0;
+        }
+        Object value = userChannelMap.get(userId);
+        if (value == null) return 0;
+        return value instanceof Channel ? 1 : ((Channel[]) value).length;
     }
 
     /**
@@ -108,18 +241,55 @@ public class ChannelManager {
      */
     public void clean() {
         // 1. 清除所有Channel的用户ID属性
-        allChannels.forEach(channel -> channel.attr(USER_ID_ATTR).set(null));
-        // 2. 清空映射和全局管理组
+        userChannelMap.forEach((userId, value) ->
+                forEachChannel(value, channel -> channel.attr(USER_ID_ATTR).set(null)));
+        // 2. 清空映射
         userChannelMap.clear();
-        allChannels.clear();
+        connectionCount.set(0);
     }
 
     /**
-     * 获取所有活跃的连接通道
+     * 获取所有活跃的连接通道（按需构建，仅用于广播等低频操作）
      * @return 通道组
      */
     public ChannelGroup getAllActiveChannels() {
-        return allChannels;
+        ChannelGroup group = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        userChannelMap.forEach((userId, value) -> forEachChannel(value, channel -> {
+            if (channel.isActive()) group.add(channel);
+        }));
+        return group;
+    }
+
+    /**
+     * 所有已绑定的Channel（快照）
+     */
+    public List<Channel> getAllChannels() {
+        List<Channel> channels = new ArrayList<>(userChannelMap.size());
+        userChannelMap.forEach((userId, value) -> forEachChannel(value, channels::add));
+        return channels;
+    }
+
+    /**
+     * 所有已绑定的用户ID（快照）
+     */
+    public List<Long> getUserIds() {
+        List<Long> userIds = new ArrayList<>(userChannelMap.size());
+        userChannelMap.forEach((userId, value) -> userIds.add(userId));
+        return userIds;
+    }
+
+    /**
+     * 当前绑定的连接数
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * 当前绑定的用户数
+     */
+    public int size() {
+        return userChannelMap.size();
     }
 
     /**
@@ -130,4 +300,18 @@ public class ChannelManager {
     public boolean isOnline(Long userId) {
         return getChannel(userId) != null;
     }
+
+    private boolean sameDevice(Channel a, Channel b) {
+        return Objects.equals(a.attr(DEVICE_ATTR).get(), b.attr(DEVICE_ATTR).get());
+    }
+
+    private static void forEachChannel(Object value, Consumer<Channel> action) {
+        if (value instanceof Channel channel) {
+            action.accept(channel);
+        } else if (value != null) {
+            for (Channel channel : (Channel[]) value) {
+                action.accept(channel);
+            }
+        }
+    }
 }
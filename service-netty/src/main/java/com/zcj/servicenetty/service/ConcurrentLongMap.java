@@ -0,0 +1,341 @@
+package com.zcj.servicenetty.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * long 键的并发哈希表（分段 + 开放寻址）
+ * <p>
+ * 键以原始 long 存放，不产生 Long 装箱和链表节点；每个分段是一张线性探测表，
+ * 写操作持有分段写锁，读操作走 StampedLock 乐观读，无竞争时不加锁。
+ * 值不允许为 null（null 表示空槽）。
+ */
+public final class ConcurrentLongMap<V> {
+
+    private static final int DEFAULT_SEGMENTS = 64;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    // 负载因子 0.5：线性探测在该负载下平均探测长度约 1.5
+    private static final int LOAD_FACTOR_SHIFT = 1;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public ConcurrentLongMap() {
+        this(DEFAULT_SEGMENTS, 1024);
+    }
+
+    /**
+     * @param segmentCount     分段数（向上取整为2的幂）
+     * @param expectedCapacity 预计元素数量，用于初始化各分段容量
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap(int segmentCount, int expectedCapacity) {
+        int count = tableSizeFor(Math.max(1, segmentCount));
+        int perSegment = tableSizeFor(Math.max(MIN_SEGMENT_CAPACITY,
+                (expectedCapacity / count) << LOAD_FACTOR_SHIFT));
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+        // 高位选分段，低位选槽位，两者互不相关
+        segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+
+    public V get(long key) {
+        long h = hash(key);
+        return segmentFor(h).get(key, h);
+    }
+
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException("value");
+        long h = hash(key);
+        return segmentFor(h).put(key, h, value);
+    }
+
+    public V remove(long key) {
+        long h = hash(key);
+        return segmentFor(h).remove(key, h, null);
+    }
+
+    /**
+     * 仅当当前值为 expected（同一对象）时移除
+     */
+    public boolean remove(long key, V expected) {
+        if (expected == null) return false;
+        long h = hash(key);
+        return segmentFor(h).remove(key, h, expected) != null;
+    }
+
+    /**
+     * 在分段写锁内原子地计算新值，返回 null 表示删除该键
+     */
+    public V compute(long key, LongObjFunction<? super V, ? extends V> function) {
+        long h = hash(key);
+        return segmentFor(h).compute(key, h, function);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 批量查询，结果写入 out（out[i] 对应 keys[i]，不存在为 null）
+     */
+    public void getAll(long[] keys, V[] out) {
+        for (int i = 0; i < keys.length; i++) {
+            out[i] = get(keys[i]);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void forEach(LongObjConsumer<? super V> action) {
+        for (Segment<V> segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @FunctionalInterface
+    public interface LongObjConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @FunctionalInterface
+    public interface LongObjFunction<V, R> {
+        R apply(long key, V value);
+    }
+
+    private Segment<V> segmentFor(long h) {
+        return segments[(int) (h >>> segmentShift) & (segments.length - 1)];
+    }
+
+    private static long hash(long key) {
+        // murmur3 fmix64，雪花ID低位规律性强，需要充分打散
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+        return n == 1 ? 1 : size;
+    }
+
+    /**
+     * 单个分段：线性探测表，删除时后移回填（不使用墓碑）
+     */
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys;
+        private Object[] values;
+        private volatile int size;
+
+        Segment(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key, long h) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object v = probe(key, h);
+                if (lock.validate(stamp)) return (V) v;
+            }
+            stamp = lock.readLock();
+            try {
+                return (V) probe(key, h);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * 乐观读期间数组可能被并发修改或替换，因此只使用局部引用并限制探测次数，
+         * 读到的结果由调用方通过 validate 判定是否有效
+         */
+        private Object probe(long key, long h) {
+            long[] ks = keys;
+            Object[] vs = values;
+            if (ks.length != vs.length) return null;
+            int mask = ks.length - 1;
+            int idx = (int) h & mask;
+            for (int i = 0; i <= mask; i++) {
+                Object v = vs[idx];
+                if (v == null) return null;
+                if (ks[idx] == key) return v;
+                idx = (idx + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, long h, V value) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int idx = (int) h & mask;
+                while (values[idx] != null) {
+                    if (keys[idx] == key) {
+                        Object old = values[idx];
+                        values[idx] = value;
+                        return (V) old;
+                    }
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                values[idx] = value;
+                size = size + 1;
+                if ((size << LOAD_FACTOR_SHIFT) > keys.length) {
+                    resize();
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V compute(long key, long h, LongObjFunction<? super V, ? extends V> function) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int idx = (int) h & mask;
+                while (values[idx] != null) {
+                    if (keys[idx] == key) {
+                        V value = function.apply(key, (V) values[idx]);
+                        if (value == null) {
+                            shiftBack(idx, mask);
+                            size = size - 1;
+                        } else {
+                            values[idx] = value;
+                        }
+                        return value;
+                    }
+                    idx = (idx + 1) & mask;
+                }
+                V value = function.apply(key, null);
+                if (value != null) {
+                    keys[idx] = key;
+                    values[idx] = value;
+                    size = size + 1;
+                    if ((size << LOAD_FACTOR_SHIFT) > keys.length) {
+                        resize();
+                    }
+                }
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long key, long h, Object expected) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int idx = (int) h & mask;
+                while (values[idx] != null) {
+                    if (keys[idx] == key) {
+                        Object old = values[idx];
+                        if (expected != null && old != expected) return null;
+                        shiftBack(idx, mask);
+                        size = size - 1;
+                        return (V) old;
+                    }
+                    idx = (idx + 1) & mask;
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * 删除 idx 处元素后，把后续探测链上的元素前移，保持探测链连续
+         */
+        private void shiftBack(int idx, int mask) {
+            int gap = idx;
+            int next = (gap + 1) & mask;
+            while (values[next] != null) {
+                int home = (int) hash(keys[next]) & mask;
+                // home 不在 (gap, next] 区间内时，该元素可以移动到 gap
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int capacity = oldKeys.length << 1;
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null) continue;
+                int idx = (int) hash(oldKeys[i]) & mask;
+                while (newValues[idx] != null) {
+                    idx = (idx + 1) & mask;
+                }
+                newKeys[idx] = oldKeys[i];
+                newValues[idx] = oldValues[i];
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(LongObjConsumer<? super V> action) {
+            long[] ks;
+            Object[] vs;
+            // 复制后在锁外回调，避免回调中访问本表造成死锁
+            long stamp = lock.readLock();
+            try {
+                ks = Arrays.copyOf(keys, keys.length);
+                vs = Arrays.copyOf(values, values.length);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < vs.length; i++) {
+                if (vs[i] != null) action.accept(ks[i], (V) vs[i]);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                Arrays.fill(keys, 0);
+                Arrays.fill(values, null);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+}
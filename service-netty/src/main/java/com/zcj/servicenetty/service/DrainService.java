@@ -0,0 +1,115 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.bootstrap.NettyServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.cloud.client.serviceregistry.ServiceRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点排空：滚动发布前把连接分批迁移到其他节点
+ * <p>
+ * 1. 关闭监听端口，不再接收新连接；
+ * 2. 从注册中心下线，网关与 getAddr 不再分配到本节点；
+ * 3. 在窗口期内分批向客户端发送 ORDER_RECONNECT 后关闭连接，避免所有客户端同时重连；
+ * 4. 每批连接的路由使用管道批量清理。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DrainService {
+
+    // 每批的时间间隔
+    private static final long TICK_MILLIS = 100;
+
+    private final NettyServerBootstrap serverBootstrap;
+    private final ChannelManager channelManager;
+    private final MessageRouterService messageRouterService;
+    private final ObjectProvider<ServiceRegistry<Registration>> serviceRegistryProvider;
+    private final ObjectProvider<Registration> registrationProvider;
+
+    /**
+     * 开始排空
+     * @param windowSeconds 排空窗口（秒），连接在窗口内均匀分批迁移
+     * @return 需要迁移的连接数，已在排空中返回-1
+     */
+    public int drain(int windowSeconds) {
+        if (!serverBootstrap.stopAccepting()) {
+            return -1;
+        }
+        deregister();
+
+        List<Channel> channels = channelManager.getAllChannels();
+        // 打乱顺序，避免同一用户的多个设备、同一批次的用户集中重连到同一节点
+        Collections.shuffle(channels);
+        int ticks = (int) Math.max(1, TimeUnit.SECONDS.toMillis(Math.max(0, windowSeconds)) / TICK_MILLIS);
+        int batchSize = Math.max(1, (channels.size() + ticks - 1) / ticks);
+        log.info("开始排空连接: 连接数 {}, 窗口 {}s, 每批 {}", channels.size(), windowSeconds, batchSize);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "netty-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int batches = (channels.size() + batchSize - 1) / batchSize;
+        for (int i = 0; i < batches; i++) {
+            List<Channel> batch = channels.subList(i * batchSize, Math.min(channels.size(), (i + 1) * batchSize));
+            scheduler.schedule(() -> reconnect(batch), i * TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        scheduler.schedule(() -> {
+            log.info("连接排空完成，剩余绑定用户数 {}", channelManager.size());
+            scheduler.shutdown();
+        }, batches * TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return channels.size();
+    }
+
+    public boolean isDraining() {
+        return serverBootstrap.isDraining();
+    }
+
+    private void reconnect(List<Channel> batch) {
+        try {
+            List<Long> userIds = new ArrayList<>(batch.size());
+            for (Channel channel : batch) {
+                // 先解除绑定，channelInactive 时不再逐个清理路由
+                Long userId = channelManager.unbind(channel);
+                if (userId == null) continue;
+                userIds.add(userId);
+                Protocol protocol = new Protocol();
+                protocol.setType(Protocol.ORDER_RECONNECT, Protocol.CONTENT_EMPTY);
+                protocol.setTimeStamp(System.currentTimeMillis());
+                channel.writeAndFlush(protocol).addListener(ChannelFutureListener.CLOSE);
+            }
+            messageRouterService.unregisterBatch(userIds);
+        } catch (Exception e) {
+            log.error("连接排空批次执行失败", e);
+        }
+    }
+
+    private void deregister() {
+        ServiceRegistry<Registration> serviceRegistry = serviceRegistryProvider.getIfAvailable();
+        Registration registration = registrationProvider.getIfAvailable();
+        if (serviceRegistry == null || registration == null) {
+            log.warn("未找到服务注册信息，跳过注册中心下线");
+            return;
+        }
+        try {
+            serviceRegistry.deregister(registration);
+            log.info("已从注册中心下线: {}", registration.getServiceId());
+        } catch (Exception e) {
+            log.warn("注册中心下线失败: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.utils.GroupMembershipCache;
+import com.zcj.servicenetty.mapper.ChatMessageMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 群成员缓存的加载器
+ */
+@Component
+@RequiredArgsConstructor
+public class GroupMemberLoader implements GroupMembershipCache.Loader {
+
+    private final ChatMessageMapper chatMessageMapper;
+
+    @Override
+    public List<Long> load(long groupId) {
+        return chatMessageMapper.selectGroupMemberIds(groupId);
+    }
+}
@@ -3,48 +3,261 @@ package com.zcj.servicenetty.service;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.zcj.common.dto.SendRequestDTO;
 import com.zcj.common.entity.ChatMessage;
-import com.zcj.common.entity.Protocol;
 import com.zcj.common.feign.NettyFeignClient;
+import com.zcj.servicenetty.handler.AuthHandler;
 import feign.Feign;
 import feign.codec.Decoder;
 import feign.codec.Encoder;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.cloud.openfeign.FeignClientsConfiguration;
 import org.springframework.context.annotation.Import;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Import(FeignClientsConfiguration.class)
 public class MessageRouterService {
 
-    private final Cache<Long, String> user_route_cache;
+    private final Cache<Long, Set<String>> user_route_cache;
     private final StringRedisTemplate redisTemplate;
-    public static final String USER_ROUTE_KEY = "netty:user_route";
+    // 用户路由表: netty:user_route:{userId} -> Hash(节点地址 -> 该节点上的设备数)
+    public static final String USER_ROUTE_KEY = "netty:user_route:";
+
+    final static private String routeIncrLua = """
+                -- 节点上的设备数增减，减到0时删除该节点
+                local count = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+                if count <= 0 then
+                    redis.call('HDEL', KEYS[1], ARGV[1])
+                end
+                return count
+            """;
+    // 只计算一次SHA1，管道中以 EVALSHA 执行，不必每个用户都发送完整脚本
+    private static final RedisScript<Long> ROUTE_INCR_SCRIPT = RedisScript.of(routeIncrLua, Long.class);
+    private static final byte[] ROUTE_INCR_SHA = ROUTE_INCR_SCRIPT.getSha1().getBytes(StandardCharsets.UTF_8);
+    // 脚本是否已加载到Redis（Redis重启或清空脚本后收到 NOSCRIPT 时重新加载）
+    private volatile boolean scriptLoaded;
+
+    // 待写入的路由变更：用户ID -> 本节点设备数增量
+    private final ConcurrentHashMap<Long, Integer> pendingRoutes = new ConcurrentHashMap<>();
+    // 本节点登记的设备数：用户ID -> 设备数，与 pendingRoutes 在同一把分段锁内更新
+    private final ConcurrentLongMap<Integer> localRoutes = new ConcurrentLongMap<>(256, 1 << 18);
+    // 写入结果未知的用户（可能已部分生效），下次按本地设备数整体覆盖，而不是重放增量
+    private final Set<Long> rebuildRoutes = ConcurrentHashMap.newKeySet();
 
     private final Encoder encoder;
     private final Decoder decoder;
     private final Map<String, NettyFeignClient> clientCache = new ConcurrentHashMap<>();
 
+    public static String routeKey(Long userId) {
+        return USER_ROUTE_KEY + userId;
+    }
+
+    /**
+     * 注册用户在本节点新增一个设备（异步批量写入）
+     */
+    public void register(Long userId) {
+        updateRoute(userId, 1);
+    }
+
+    /**
+     * 注销用户在本节点的一个设备（异步批量写入）
+     */
+    public void unregister(Long userId) {
+        updateRoute(userId, -1);
+    }
+
+    private void updateRoute(Long userId, int delta) {
+        localRoutes.compute(userId, (key, count) -> {
+            // 同一用户的增减先在本地合并，抵消为0时不再写Redis（如重连风暴中的断开+重连）
+            pendingRoutes.merge(userId, delta, (a, b) -> a + b == 0 ? null : a + b);
+            int newCount = (count == null ? 0 : count) + delta;
+            return newCount > 0 ? newCount : null;
+        });
+    }
+
+    /**
+     * 把待写入的路由变更通过管道一次性写入Redis
+     * 串行执行：同一用户先后的增减按顺序到达Redis，避免先减后加留下没有设备的路由
+     * 写入失败的用户不重放增量（已生效的部分会被重复计数），而是下次按本地设备数整体覆盖
+     */
+    @Scheduled(fixedDelay = 10)
+    public synchronized void flushRoutes() {
+        if (pendingRoutes.isEmpty() && rebuildRoutes.isEmpty()) return;
+        if (!scriptLoaded) {
+            try {
+                redisTemplate.execute((RedisCallback<String>) connection ->
+                        connection.scriptingCommands().scriptLoad(routeIncrLua.getBytes(StandardCharsets.UTF_8)));
+                scriptLoaded = true;
+            } catch (Exception e) {
+                // 尚未取出任何变更，下次重试
+                log.warn("路由脚本加载失败: {}", e.toString());
+                return;
+            }
+        }
+        // 需要重建的用户：在分段锁内取出本地设备数并丢弃其增量，之后的增量接在覆盖值之后写入
+        List<Long> rebuildIds = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (Iterator<Long> it = rebuildRoutes.iterator(); it.hasNext(); ) {
+            Long userId = it.next();
+            it.remove();
+            localRoutes.compute(userId, (key, count) -> {
+                pendingRoutes.remove(userId);
+                rebuildIds.add(userId);
+                counts.add(count == null ? 0 : count);
+                return count;
+            });
+        }
+        List<Long> userIds = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        for (Long userId : pendingRoutes.keySet()) {
+            Integer delta = pendingRoutes.remove(userId);
+            if (delta == null || delta == 0) continue;
+            userIds.add(userId);
+            deltas.add(delta);
+        }
+        if (rebuildIds.isEmpty() && userIds.isEmpty()) return;
+
+        int total = rebuildIds.size() + userIds.size();
+        List<Object> results;
+        try {
+            results = writeRoutes(rebuildIds, counts, userIds, deltas);
+        } catch (RedisPipelineException e) {
+            // 管道中部分命令失败，逐条检查结果
+            results = e.getPipelineResult();
+        } catch (Exception e) {
+            results = Collections.emptyList();
+        }
+        if (results.size() != total) {
+            // 无法确定哪些命令已生效（如连接中断、超时），全部按本地设备数重建
+            log.warn("路由批量写入失败，{} 个用户下次重建", total);
+            rebuildRoutes.addAll(rebuildIds);
+            rebuildRoutes.addAll(userIds);
+            return;
+        }
+        List<Long> written = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            Long userId = i < rebuildIds.size() ? rebuildIds.get(i) : userIds.get(i - rebuildIds.size());
+            Object result = results.get(i);
+            if (result instanceof Throwable t) {
+                if (isNoScript(t)) scriptLoaded = false;
+                rebuildRoutes.add(userId);
+            } else {
+                written.add(userId);
+            }
+        }
+        if (written.size() < total) {
+            log.warn("路由批量写入部分失败，{} 个用户下次重建", total - written.size());
+        }
+        user_route_cache.invalidateAll(written);
+    }
+
+    private List<Object> writeRoutes(List<Long> rebuildIds, List<Integer> counts,
+                                     List<Long> userIds, List<Integer> deltas) {
+        byte[] addr = AuthHandler.getLocalAddr().getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // 覆盖写在前：同一用户随后的增量接在覆盖值之后
+            for (int i = 0; i < rebuildIds.size(); i++) {
+                byte[] key = routeKey(rebuildIds.get(i)).getBytes(StandardCharsets.UTF_8);
+                int count = counts.get(i);
+                if (count > 0) {
+                    connection.hashCommands().hSet(key, addr, String.valueOf(count).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    connection.hashCommands().hDel(key, addr);
+                }
+            }
+            for (int i = 0; i < userIds.size(); i++) {
+                connection.scriptingCommands().evalSha(ROUTE_INCR_SHA, ReturnType.INTEGER, 1,
+                        routeKey(userIds.get(i)).getBytes(StandardCharsets.UTF_8), addr,
+                        String.valueOf(deltas.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    private static boolean isNoScript(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 批量注销用户设备（每个元素代表一个设备），立即以一次管道往返写入
+     * 与尚未写入的注册在本地合并：注册还在队列中时直接抵消，不会先把Redis中的计数减到0再被加回
+     */
+    public void unregisterBatch(List<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        for (Long userId : userIds) {
+            updateRoute(userId, -1);
+        }
+        flushRoutes();
+    }
+
+    /**
+     * 批量删除用户在本节点的路由（节点关闭时使用，不论设备数）
+     */
+    public synchronized void removeLocalRoutes(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return;
+        // 丢弃尚未写入的变更，避免删除后又被写回
+        for (Long userId : userIds) {
+            localRoutes.compute(userId, (key, count) -> {
+                pendingRoutes.remove(userId);
+                return null;
+            });
+        }
+        rebuildRoutes.removeAll(userIds);
+        byte[] addr = AuthHandler.getLocalAddr().getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : userIds) {
+                connection.hashCommands().hDel(routeKey(userId).getBytes(StandardCharsets.UTF_8), addr);
+            }
+            return null;
+        });
+        user_route_cache.invalidateAll(userIds);
+    }
+
+    /**
+     * 获取用户设备所在的节点地址，用户离线时返回null（不缓存）
+     */
+    public Set<String> getRoutes(Long userId) {
+        return user_route_cache.get(userId, (key) -> {
+            // redis缓存 用户TCP连接地址表
+            Set<Object> addrs = redisTemplate.opsForHash().keys(routeKey(userId));
+            if (addrs.isEmpty()) return null;
+            Set<String> result = new HashSet<>(addrs.size());
+            for (Object addr : addrs) {
+                result.add(addr.toString());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 把消息转发到用户设备所在的其他节点（本节点的设备由调用方直接写出）
+     */
     public boolean dispatch(List<Long> ids, ChatMessage message) {
+        String localAddr = AuthHandler.getLocalAddr();
         HashMap<String, List<Long>> map = new HashMap<>();
         for (Long id : ids) {
-            String ipAddr = user_route_cache.get(id, (key) -> {
-                // redis缓存 用户TCP连接地址表
-                Object o = redisTemplate.opsForHash().get(USER_ROUTE_KEY, id.toString());
-                if (o == null) return null;
-                else return o.toString();
-            });
-            if (ipAddr != null) {
-                List<Long> orDefault = map.getOrDefault(ipAddr, new ArrayList<>());
-                orDefault.add(id);
-                map.put(ipAddr, orDefault);
+            Set<String> routes = getRoutes(id);
+            if (routes == null) continue;
+            for (String ipAddr : routes) {
+                if (ipAddr.equals(localAddr)) continue;
+                map.computeIfAbsent(ipAddr, k -> new ArrayList<>()).add(id);
             }
         }
         for (Map.Entry<String, List<Long>> entry : map.entrySet()) {
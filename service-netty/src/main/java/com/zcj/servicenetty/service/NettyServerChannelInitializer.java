@@ -1,14 +1,18 @@
 package com.zcj.servicenetty.service;
 
+import com.zcj.servicenetty.config.NettyProperties;
 import com.zcj.servicenetty.handler.*;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 @Component
 @AllArgsConstructor
 public class NettyServerChannelInitializer extends ChannelInitializer<SocketChannel> {
@@ -19,13 +23,29 @@ public class NettyServerChannelInitializer extends ChannelInitializer<SocketChan
     private ObjectProvider<AuthHandler> authHandlerProvider;
     @Autowired
     private MessageHandler messageHandler;
+    @Autowired
+    private HeartbeatHandler heartbeatHandler;
+    @Autowired
+    private RateLimitHandler rateLimitHandler;
+    @Autowired
+    private NettyProperties nettyProperties;
+
+    // 空闲检测处理器名称，验证通过后按平台替换超时时间
+    public static final String IDLE_HANDLER = "idleStateHandler";
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
-        pipeline.addLast(new ProtocolFrameDecoder());
-        pipeline.addLast(protocolEncoder);
+        // 未验证前使用较短的超时，避免空连接占用资源
+        pipeline.addLast(IDLE_HANDLER, new IdleStateHandler(
+                nettyProperties.getHeartbeat().getAuthTimeout(), 0, 0, TimeUnit.SECONDS));
+        // 按首包识别原生TCP或WebSocket，安装对应的帧编解码器后移除自己
+        pipeline.addLast(new PortUnificationHandler(nettyProperties, protocolEncoder));
         pipeline.addLast(authHandlerProvider.getObject());
+        // 分片重组在验证之后，未验证的连接无法发送分片占用内存
+        pipeline.addLast(new ChunkAggregator(nettyProperties.getFrame().getMaxMessageLength()));
+        pipeline.addLast(heartbeatHandler);
+        pipeline.addLast(rateLimitHandler);
         pipeline.addLast(new IdempotentHandler());
         pipeline.addLast(messageHandler);
     }
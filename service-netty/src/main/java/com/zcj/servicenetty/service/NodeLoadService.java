@@ -0,0 +1,221 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.utils.NetUtil;
+import com.zcj.servicenetty.bootstrap.NettyServerBootstrap;
+import com.zcj.servicenetty.config.NettyProperties;
+import com.zcj.servicenetty.handler.AuthHandler;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点负载与连接分配
+ * <p>
+ * 每个节点周期性地把连接数、事件循环延迟、堆内存使用率写入 Redis Hash，
+ * 分配连接时优先沿用用户已有连接或上次分配的节点（粘性），
+ * 否则在存活节点中随机取两个，选择负载较低的一个（power of two choices），
+ * 避免所有请求同时涌向同一个“最空闲”节点。
+ */
+@Slf4j
+@Service
+@DependsOn("serverConfig") // 需要先初始化本机地址
+@RequiredArgsConstructor
+public class NodeLoadService {
+
+    // 节点负载 Hash: 节点地址 -> "Netty地址|连接数|事件循环延迟(微秒)|堆使用率(千分比)|时间戳"
+    public static final String NODE_LOAD_KEY = "netty:node_load";
+    // 用户上次分配的节点: netty:user_assign:{userId} -> 节点地址
+    public static final String USER_ASSIGN_KEY = "netty:user_assign:";
+
+    private static final long PUBLISH_INTERVAL_MILLIS = 2_000;
+    // 超过该时间未更新的节点视为失效
+    private static final long LOAD_EXPIRE_MILLIS = 10_000;
+    // 上次分配的保留时间
+    private static final long ASSIGN_TTL_SECONDS = 600;
+    // 粘性节点负载超过平均值的该倍数时不再沿用
+    private static final double STICKY_OVERLOAD_FACTOR = 1.5;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ChannelManager channelManager;
+    private final NettyServerBootstrap serverBootstrap;
+    private final MessageRouterService messageRouterService;
+    private final NettyProperties nettyProperties;
+
+    private String nettyAddr;
+    // 尚未执行的延迟探测: 事件循环 -> 提交时间（纳秒）
+    private final Map<EventExecutor, Long> pendingProbes = new ConcurrentHashMap<>();
+    // 已执行的探测中的最大延迟（纳秒），每次采样后清零
+    private final AtomicLong completedLag = new AtomicLong();
+    // 最近一次读取的存活节点负载
+    private volatile List<NodeLoad> nodes = Collections.emptyList();
+
+    @PostConstruct
+    public void init() throws SocketException {
+        nettyAddr = NetUtil.getLocalIp() + ":" + nettyProperties.getPort();
+    }
+
+    /**
+     * 发布本节点负载并刷新集群负载表
+     */
+    @Scheduled(fixedDelay = PUBLISH_INTERVAL_MILLIS)
+    public void publish() {
+        long lagNanos = sampleEventLoopLag();
+        try {
+            String localAddr = AuthHandler.getLocalAddr();
+            if (serverBootstrap.isDraining()) {
+                // 排空中的节点不再参与分配
+                redisTemplate.opsForHash().delete(NODE_LOAD_KEY, localAddr);
+            } else {
+                Runtime runtime = Runtime.getRuntime();
+                long heapPermille = (runtime.totalMemory() - runtime.freeMemory()) * 1000 / runtime.maxMemory();
+                String value = nettyAddr + "|" + channelManager.getConnectionCount() + "|"
+                        + TimeUnit.NANOSECONDS.toMicros(lagNanos) + "|" + heapPermille + "|"
+                        + System.currentTimeMillis();
+                redisTemplate.opsForHash().put(NODE_LOAD_KEY, localAddr, value);
+            }
+            refresh();
+        } catch (Exception e) {
+            log.warn("发布节点负载失败: {}", e.toString());
+        }
+    }
+
+    /**
+     * 为用户分配 Netty 节点地址
+     * @param userId 用户ID，为空时不做粘性处理
+     */
+    public String assign(Long userId) {
+        List<NodeLoad> alive = nodes;
+        if (alive.isEmpty()) {
+            return nettyAddr;
+        }
+        Map<String, NodeLoad> byAddr = new HashMap<>(alive.size() * 2);
+        double average = 0;
+        for (NodeLoad node : alive) {
+            byAddr.put(node.addr, node);
+            average += node.score();
+        }
+        average /= alive.size();
+
+        // 1. 粘性：用户已有设备所在的节点，其次是上次分配的节点
+        if (userId != null) {
+            Set<String> routes = messageRouterService.getRoutes(userId);
+            if (routes != null) {
+                for (String addr : routes) {
+                    NodeLoad node = byAddr.get(addr);
+                    if (node != null && node.score() <= average * STICKY_OVERLOAD_FACTOR + 1) {
+                        return node.nettyAddr;
+                    }
+                }
+            }
+            String last = redisTemplate.opsForValue().get(USER_ASSIGN_KEY + userId);
+            NodeLoad node = last != null ? byAddr.get(last) : null;
+            if (node != null && node.score() <= average * STICKY_OVERLOAD_FACTOR + 1) {
+                return node.nettyAddr;
+            }
+        }
+
+        // 2. 随机两个节点中选负载较低的
+        NodeLoad chosen;
+        if (alive.size() == 1) {
+            chosen = alive.get(0);
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(alive.size());
+            int b = random.nextInt(alive.size() - 1);
+            if (b >= a) b++;
+            chosen = alive.get(a).score() <= alive.get(b).score() ? alive.get(a) : alive.get(b);
+        }
+        if (userId != null) {
+            redisTemplate.opsForValue().set(USER_ASSIGN_KEY + userId, chosen.addr, ASSIGN_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+        return chosen.nettyAddr;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        try {
+            redisTemplate.opsForHash().delete(NODE_LOAD_KEY, AuthHandler.getLocalAddr());
+        } catch (Exception e) {
+            log.warn("删除节点负载失败: {}", e.toString());
+        }
+    }
+
+    private void refresh() {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(NODE_LOAD_KEY);
+        long now = System.currentTimeMillis();
+        List<NodeLoad> alive = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String[] parts = entry.getValue().toString().split("\\|");
+            if (parts.length != 5) continue;
+            try {
+                long timestamp = Long.parseLong(parts[4]);
+                if (now - timestamp > LOAD_EXPIRE_MILLIS) continue;
+                alive.add(new NodeLoad(entry.getKey().toString(), parts[0], Integer.parseInt(parts[1]),
+                        Long.parseLong(parts[2]), Integer.parseInt(parts[3])));
+            } catch (NumberFormatException e) {
+                log.warn("节点负载格式错误: {}", entry);
+            }
+        }
+        nodes = alive;
+    }
+
+    /**
+     * 采样事件循环延迟并提交下一轮探测
+     * <p>
+     * 返回上一轮探测的结果：已执行探测从提交到执行的最大延迟，与仍未执行的探测已等待时间中的较大者，
+     * 因此被阻塞的事件循环会持续报告增长的延迟。仍未执行的事件循环不重复提交探测。
+     * @return 事件循环最大延迟（纳秒）
+     */
+    long sampleEventLoopLag() {
+        EventLoopGroup group = serverBootstrap.getWorkerGroup();
+        if (group == null) return 0;
+        long now = System.nanoTime();
+        long lag = 0;
+        for (long submitted : pendingProbes.values()) {
+            lag = Math.max(lag, now - submitted);
+        }
+        lag = Math.max(lag, completedLag.getAndSet(0));
+        for (EventExecutor executor : group) {
+            if (pendingProbes.putIfAbsent(executor, now) != null) continue;
+            try {
+                executor.execute(() -> {
+                    Long submitted = pendingProbes.remove(executor);
+                    if (submitted != null) {
+                        completedLag.accumulateAndGet(System.nanoTime() - submitted, Math::max);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 事件循环已关闭
+                pendingProbes.remove(executor);
+            }
+        }
+        return lag;
+    }
+
+    private record NodeLoad(String addr, String nettyAddr, int connections, long lagMicros, int heapPermille) {
+        /**
+         * 负载评分：以连接数为主，事件循环延迟超过10ms、堆使用率超过80%时按比例加重
+         */
+        double score() {
+            double score = connections;
+            if (lagMicros > 10_000) score *= 1 + lagMicros / 10_000.0;
+            if (heapPermille > 800) score *= 1 + (heapPermille - 800) / 100.0;
+            return score;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.servicenetty.handler.AuthHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 集群在线状态服务
+ * <p>
+ * 每个节点用 Roaring64Bitmap 维护本地在线用户，变更以增量(add/remove 位图)的形式
+ * 通过 Redis 发布订阅广播给其他节点；各节点在内存中保存所有节点的位图视图，
+ * 批量在线查询无需访问 Redis。
+ * 快照周期性写入 Redis Hash，用于节点启动加载以及增量丢失(seq 不连续)时的恢复。
+ */
+@Slf4j
+@Service
+@DependsOn("serverConfig") // 需要先初始化本机地址
+@RequiredArgsConstructor
+public class PresenceService implements MessageListener {
+
+    // 增量广播频道
+    public static final String PRESENCE_CHANNEL = "netty:presence";
+    // 快照 Hash: 节点地址 -> "seq|时间戳|base64位图"
+    public static final String PRESENCE_SNAPSHOT_KEY = "netty:presence";
+
+    // 增量刷新间隔
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    // 无变更时的心跳间隔（空增量）
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 10_000;
+    // 快照写入间隔
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 30_000;
+    // 超过该时间未收到任何消息的节点视图视为失效
+    private static final long VIEW_EXPIRE_MILLIS = 45_000;
+    // 节点下线标记
+    private static final long SEQ_OFFLINE = -1;
+
+    private final StringRedisTemplate redisTemplate;
+
+    /********************* 本地在线状态 *********************/
+    private final ReentrantReadWriteLock localLock = new ReentrantReadWriteLock();
+    private final Roaring64Bitmap local = new Roaring64Bitmap();
+    private Roaring64Bitmap pendingAdd = new Roaring64Bitmap();
+    private Roaring64Bitmap pendingRemove = new Roaring64Bitmap();
+    // 以启动时间为起点，保证节点重启后 seq 仍单调递增
+    private long localSeq = System.currentTimeMillis();
+    private long lastPublishAt = 0;
+
+    /********************* 其他节点视图 *********************/
+    private final Map<String, RemoteView> remoteViews = new ConcurrentHashMap<>();
+
+    /**
+     * 用户在本节点上线
+     */
+    public void online(long userId) {
+        localLock.writeLock().lock();
+        try {
+            if (local.contains(userId)) return;
+            local.addLong(userId);
+            // 同一刷新周期内先下线再上线，抵消掉
+            if (pendingRemove.contains(userId)) {
+                pendingRemove.removeLong(userId);
+            } else {
+                pendingAdd.addLong(userId);
+            }
+        } finally {
+            localLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用户在本节点下线
+     */
+    public void offline(long userId) {
+        localLock.writeLock().lock();
+        try {
+            if (!local.contains(userId)) return;
+            local.removeLong(userId);
+            if (pendingAdd.contains(userId)) {
+                pendingAdd.removeLong(userId);
+            } else {
+                pendingRemove.addLong(userId);
+            }
+        } finally {
+            localLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isOnline(long userId) {
+        localLock.readLock().lock();
+        try {
+            if (local.contains(userId)) return true;
+        } finally {
+            localLock.readLock().unlock();
+        }
+        for (RemoteView view : remoteViews.values()) {
+            if (view.contains(userId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 批量查询在线用户，返回输入中在线的用户ID（保持输入顺序）
+     */
+    public List<Long> filterOnline(Collection<Long> userIds) {
+        List<Long> result = new ArrayList<>();
+        if (userIds == null || userIds.isEmpty()) return result;
+        // 本地与各远程视图各加一次锁，避免逐个ID加锁
+        boolean[] hit = new boolean[userIds.size()];
+        long[] ids = userIds.stream().mapToLong(Long::longValue).toArray();
+        localLock.readLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                hit[i] = local.contains(ids[i]);
+            }
+        } finally {
+            localLock.readLock().unlock();
+        }
+        for (RemoteView view : remoteViews.values()) {
+            view.mark(ids, hit);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (hit[i]) result.add(ids[i]);
+        }
+        return result;
+    }
+
+    // ========================= 增量广播 ==========================
+
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MILLIS)
+    public void flush() {
+        String localAddr = AuthHandler.getLocalAddr();
+        if (localAddr == null) return;
+        String payload;
+        localLock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            boolean empty = pendingAdd.isEmpty() && pendingRemove.isEmpty();
+            if (empty && now - lastPublishAt < HEARTBEAT_INTERVAL_MILLIS) return;
+            localSeq++;
+            payload = localAddr + "|" + localSeq + "|" + encode(pendingAdd) + "|" + encode(pendingRemove);
+            pendingAdd = new Roaring64Bitmap();
+            pendingRemove = new Roaring64Bitmap();
+            lastPublishAt = now;
+        } finally {
+            localLock.writeLock().unlock();
+        }
+        try {
+            redisTemplate.convertAndSend(PRESENCE_CHANNEL, payload);
+        } catch (Exception e) {
+            // 增量丢失由接收方的 seq 检查 + 快照兜底
+            log.warn("在线状态增量发布失败: {}", e.toString());
+        }
+    }
+
+    @Scheduled(fixedDelay = SNAPSHOT_INTERVAL_MILLIS, initialDelay = SNAPSHOT_INTERVAL_MILLIS)
+    public void snapshot() {
+        String localAddr = AuthHandler.getLocalAddr();
+        if (localAddr != null) {
+            // 先发布未刷新的增量，保证快照 seq 与位图状态一致
+            flush();
+            String value;
+            localLock.readLock().lock();
+            try {
+                value = localSeq + "|" + System.currentTimeMillis() + "|" + encode(local);
+            } finally {
+                localLock.readLock().unlock();
+            }
+            try {
+                redisTemplate.opsForHash().put(PRESENCE_SNAPSHOT_KEY, localAddr, value);
+            } catch (Exception e) {
+                log.warn("在线状态快照写入失败: {}", e.toString());
+            }
+        }
+        // 清理长时间无心跳的节点视图（节点宕机）
+        long now = System.currentTimeMillis();
+        remoteViews.entrySet().removeIf(entry -> {
+            boolean expired = now - entry.getValue().lastSeenAt > VIEW_EXPIRE_MILLIS;
+            if (expired) log.info("节点 {} 在线状态视图已过期，移除", entry.getKey());
+            return expired;
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", -1);
+        if (parts.length != 4) {
+            log.warn("非法的在线状态消息: {}", body);
+            return;
+        }
+        String addr = parts[0];
+        if (addr.equals(AuthHandler.getLocalAddr())) return;
+        long seq;
+        try {
+            seq = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            log.warn("非法的在线状态消息序号: {}", body);
+            return;
+        }
+        if (seq == SEQ_OFFLINE) {
+            remoteViews.remove(addr);
+            log.info("节点 {} 下线，移除在线状态视图", addr);
+            return;
+        }
+        Roaring64Bitmap added;
+        Roaring64Bitmap removed;
+        try {
+            added = decode(parts[2]);
+            removed = decode(parts[3]);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            log.warn("非法的在线状态增量: {}, cause: {}", addr, e.toString());
+            return;
+        }
+        RemoteView view = remoteViews.computeIfAbsent(addr, k -> new RemoteView());
+        boolean applied = view.apply(seq, added, removed);
+        if (!applied) {
+            // seq 不连续，说明丢失了增量，从快照恢复后再应用当前增量
+            log.info("节点 {} 在线状态增量不连续(seq={})，从快照恢复", addr, seq);
+            try {
+                reload(addr, view);
+            } catch (Exception e) {
+                log.warn("节点 {} 在线状态快照恢复失败: {}", addr, e.toString());
+                return;
+            }
+            view.applyAfterReload(seq, added, removed);
+        }
+    }
+
+    // ========================= 快照加载 ==========================
+
+    @PostConstruct
+    public void loadSnapshots() {
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(PRESENCE_SNAPSHOT_KEY);
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String addr = entry.getKey().toString();
+                String[] parts = entry.getValue().toString().split("\\|", -1);
+                if (parts.length != 3 || addr.equals(AuthHandler.getLocalAddr())) continue;
+                if (now - Long.parseLong(parts[1]) > VIEW_EXPIRE_MILLIS + SNAPSHOT_INTERVAL_MILLIS) continue;
+                RemoteView view = new RemoteView();
+                view.reset(Long.parseLong(parts[0]), decode(parts[2]));
+                remoteViews.put(addr, view);
+            }
+            log.info("已加载 {} 个节点的在线状态快照", remoteViews.size());
+        } catch (Exception e) {
+            log.warn("在线状态快照加载失败: {}", e.toString());
+        }
+    }
+
+    private void reload(String addr, RemoteView view) {
+        Object value = redisTemplate.opsForHash().get(PRESENCE_SNAPSHOT_KEY, addr);
+        String[] parts = value == null ? null : value.toString().split("\\|", -1);
+        if (parts == null || parts.length != 3) {
+            // 节点尚未写入快照（刚启动），丢弃旧视图
+            view.reset(0, new Roaring64Bitmap());
+            return;
+        }
+        view.reset(Long.parseLong(parts[0]), decode(parts[2]));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        String localAddr = AuthHandler.getLocalAddr();
+        if (localAddr == null) return;
+        try {
+            redisTemplate.opsForHash().delete(PRESENCE_SNAPSHOT_KEY, localAddr);
+            redisTemplate.convertAndSend(PRESENCE_CHANNEL, localAddr + "|" + SEQ_OFFLINE + "||");
+        } catch (Exception e) {
+            log.warn("在线状态注销失败: {}", e.toString());
+        }
+    }
+
+    // ========================= 序列化 ==========================
+
+    private static String encode(Roaring64Bitmap bitmap) {
+        if (bitmap.isEmpty()) return "";
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            bitmap.serialize(new DataOutputStream(bos));
+            return Base64.getEncoder().encodeToString(bos.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Roaring64Bitmap decode(String value) {
+        Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        if (value == null || value.isEmpty()) return bitmap;
+        try {
+            bitmap.deserialize(new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(value))));
+            return bitmap;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 其他节点的在线位图视图
+     */
+    private static class RemoteView {
+        private final Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        private long seq = 0;
+        private volatile long lastSeenAt = System.currentTimeMillis();
+
+        synchronized boolean contains(long userId) {
+            return bitmap.contains(userId);
+        }
+
+        synchronized void mark(long[] ids, boolean[] hit) {
+            for (int i = 0; i < ids.length; i++) {
+                if (!hit[i] && bitmap.contains(ids[i])) hit[i] = true;
+            }
+        }
+
+        /**
+         * 按序应用增量，seq 不连续时返回 false
+         */
+        synchronized boolean apply(long seq, Roaring64Bitmap add, Roaring64Bitmap remove) {
+            lastSeenAt = System.currentTimeMillis();
+            if (seq <= this.seq) return true; // 重复或过期的增量
+            if (seq != this.seq + 1) return false;
+            applyDelta(seq, add, remove);
+            return true;
+        }
+
+        synchronized void applyAfterReload(long seq, Roaring64Bitmap add, Roaring64Bitmap remove) {
+            // 快照比增量新则增量已包含在快照中；否则增量中的操作是最终状态，直接覆盖
+            if (seq > this.seq) applyDelta(seq, add, remove);
+        }
+
+        synchronized void reset(long seq, Roaring64Bitmap snapshot) {
+            bitmap.clear();
+            bitmap.or(snapshot);
+            this.seq = seq;
+            lastSeenAt = System.currentTimeMillis();
+        }
+
+        private void applyDelta(long seq, Roaring64Bitmap add, Roaring64Bitmap remove) {
+            bitmap.or(add);
+            bitmap.andNot(remove);
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.entity.ChatMessage;
+import com.zcj.servicenetty.mapper.ChatMessageMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话最后一条消息摘要（写后合并）
+ * <p>
+ * 消费到的消息按会话只保留消息ID最大的一条，定时以一条 UPDATE 批量写入 chat_session 的
+ * last_message_* 字段并更新 updated_at，客户端同步会话列表时即可显示预览，无需逐个会话拉取消息。
+ * 写入时只覆盖更旧或同一条消息的摘要（撤回以相同消息ID到达），多个节点乱序写入也不会回退到更早的消息。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SessionSummaryService {
+
+    // 摘要的最大字符数
+    private static final int SUMMARY_LENGTH = 100;
+    // 单条SQL包含的会话数
+    private static final int SESSION_BATCH = 500;
+
+    private final ChatMessageMapper chatMessageMapper;
+
+    // 会话ID -> 尚未写入的最后一条消息
+    private final ConcurrentLongMap<ChatMessage> pending = new ConcurrentLongMap<>();
+
+    /**
+     * 记录已落库的消息
+     */
+    public void record(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            merge(message);
+        }
+    }
+
+    private void merge(ChatMessage message) {
+        pending.compute(message.getSessionId(), (sessionId, old) ->
+                old == null || old.getMessageId() <= message.getMessageId() ? message : old);
+    }
+
+    /**
+     * 把待写入的摘要批量写入数据库
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        if (pending.isEmpty()) return;
+        List<ChatMessage> latest = new ArrayList<>();
+        pending.forEach((sessionId, message) -> {
+            if (pending.remove(sessionId, message)) {
+                latest.add(message);
+            }
+        });
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < latest.size(); i += SESSION_BATCH) {
+            List<ChatMessage> batch = latest.subList(i, Math.min(latest.size(), i + SESSION_BATCH));
+            List<ChatMessage> summaries = batch.stream().map(SessionSummaryService::toSummary).toList();
+            try {
+                chatMessageMapper.updateLastMessage(summaries, now);
+            } catch (Exception e) {
+                // 写入失败时放回，下次重试（期间到达的更新消息优先）
+                log.warn("会话摘要写入失败: {}", e.toString());
+                batch.forEach(this::merge);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static ChatMessage toSummary(ChatMessage message) {
+        ChatMessage summary = new ChatMessage();
+        summary.setSessionId(message.getSessionId());
+        summary.setMessageId(message.getMessageId());
+        summary.setCreatedAt(message.getCreatedAt());
+        summary.setContent(summaryOf(message));
+        return summary;
+    }
+
+    static String summaryOf(ChatMessage message) {
+        if (message.getStatus() != null && message.getStatus() == ChatMessage.STATUS_DRAWBACK) {
+            return "[消息已撤回]";
+        }
+        int type = message.getType() == null ? ChatMessage.TYPE_TEXT : message.getType();
+        return switch (type) {
+            case ChatMessage.TYPE_IMAGE -> "[图片]";
+            case ChatMessage.TYPE_AUDIO -> "[语音]";
+            case ChatMessage.TYPE_VIDEO -> "[视频]";
+            case ChatMessage.TYPE_OTHER_FILE -> "[文件]";
+            case ChatMessage.TYPE_LOCATION -> "[位置]";
+            default -> {
+                String content = message.getContent() == null ? "" : message.getContent();
+                if (content.codePointCount(0, content.length()) <= SUMMARY_LENGTH) {
+                    yield content;
+                }
+                yield content.substring(0, content.offsetByCodePoints(0, SUMMARY_LENGTH));
+            }
+        };
+    }
+}
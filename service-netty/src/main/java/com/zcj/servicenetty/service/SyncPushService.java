@@ -0,0 +1,160 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.common.utils.SyncNotifier;
+import com.zcj.servicenetty.config.NettyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+/**
+ * 数据同步信号推送
+ * <p>
+ * 订阅 {@link SyncNotifier} 的广播，只向本节点在线的用户推送，每张表一个同步帧；
+ * 不在本节点的用户由其所在节点处理。
+ * <p>
+ * 每个用户待推送的表以位掩码合并：窗口期内没有新信号，或距首个信号超过最大延迟时才发送，
+ * 批量操作期间同一张表的多次变更只触发客户端一次同步。
+ */
+@Slf4j
+@Service
+public class SyncPushService implements MessageListener {
+
+    // 参与合并的表，下标即位掩码中的位
+    private static final String[] TABLES = {
+            SyncNotifier.CHAT_SESSION,
+            SyncNotifier.CHAT_GROUP,
+            SyncNotifier.GROUP_MEMBER,
+            SyncNotifier.USER_FRIEND,
+            SyncNotifier.FRIEND_REQUEST
+    };
+
+    private final ChannelManager channelManager;
+    private final NettyProperties nettyProperties;
+    // 当前时间（毫秒），测试中可替换
+    private final LongSupplier clock;
+
+    @Autowired
+    public SyncPushService(ChannelManager channelManager, NettyProperties nettyProperties) {
+        this(channelManager, nettyProperties, System::currentTimeMillis);
+    }
+
+    SyncPushService(ChannelManager channelManager, NettyProperties nettyProperties, LongSupplier clock) {
+        this.channelManager = channelManager;
+        this.nettyProperties = nettyProperties;
+        this.clock = clock;
+    }
+
+    /**
+     * 用户待推送的同步信号（不可变，每次合并生成新对象）
+     * @param mask    待同步表的位掩码
+     * @param firstAt 首个信号到达时间
+     * @param lastAt  最近一个信号到达时间
+     */
+    private record PendingSync(int mask, long firstAt, long lastAt) {
+    }
+
+    // 用户ID -> 待推送的同步信号
+    private final ConcurrentLongMap<PendingSync> pending = new ConcurrentLongMap<>();
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf('|');
+            String[] tables = body.substring(0, separator).split(",");
+            int mask = 0;
+            boolean unknown = false;
+            for (String table : tables) {
+                int bit = bitOf(table);
+                if (bit < 0) {
+                    unknown = true;
+                } else {
+                    mask |= 1 << bit;
+                }
+            }
+            for (String id : body.substring(separator + 1).split(",")) {
+                long userId = Long.parseLong(id);
+                if (channelManager.getDeviceCount(userId) == 0) {
+                    continue;
+                }
+                if (mask != 0) {
+                    enqueue(userId, mask);
+                }
+                if (unknown) {
+                    // 未登记的表不参与合并，直接推送
+                    for (String table : tables) {
+                        if (bitOf(table) < 0) push(userId, table);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("同步通知处理失败: {}", e.toString());
+        }
+    }
+
+    private void enqueue(long userId, int mask) {
+        if (nettyProperties.getSync().getDebounceMillis() <= 0) {
+            pushMask(userId, mask);
+            return;
+        }
+        long now = clock.getAsLong();
+        pending.compute(userId, (key, old) -> old == null
+                ? new PendingSync(mask, now, now)
+                : new PendingSync(old.mask() | mask, old.firstAt(), now));
+    }
+
+    /**
+     * 发送到期的同步信号
+     */
+    @Scheduled(fixedDelay = 10)
+    public void flush() {
+        if (pending.isEmpty()) return;
+        long now = clock.getAsLong();
+        long debounce = nettyProperties.getSync().getDebounceMillis();
+        long maxDelay = nettyProperties.getSync().getMaxDelayMillis();
+        pending.forEach((userId, sync) -> {
+            if (now - sync.lastAt() < debounce && now - sync.firstAt() < maxDelay) {
+                return;
+            }
+            // 只移除检查过的那一次合并结果，期间到达的新信号留到下一轮
+            if (pending.remove(userId, sync)) {
+                pushMask(userId, sync.mask());
+            }
+        });
+    }
+
+    private void pushMask(long userId, int mask) {
+        for (int bit = 0; bit < TABLES.length; bit++) {
+            if ((mask & (1 << bit)) != 0) {
+                push(userId, TABLES[bit]);
+            }
+        }
+    }
+
+    private static int bitOf(String table) {
+        for (int i = 0; i < TABLES.length; i++) {
+            if (TABLES[i].equals(table)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 向用户在本节点的设备推送同步信号
+     * @return 写出的设备数量
+     */
+    public int push(long userId, String table) {
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_SYNC | Protocol.CONTENT_TEXT);
+        protocol.setSessionId(userId);
+        protocol.setContent(table);
+        protocol.setTimeStamp(System.currentTimeMillis());
+        return channelManager.writeAndFlush(userId, protocol);
+    }
+}
@@ -0,0 +1,51 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分片重组测试类：重组期间放行其他帧，拒绝交错的分片
+ */
+class ChunkAggregatorTest {
+
+    private static Protocol chunk(long identityId, String content, boolean continuation) {
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_MESSAGE, Protocol.CONTENT_TEXT);
+        protocol.setIdentityId(identityId);
+        protocol.setContent(content);
+        protocol.setFlag(Protocol.FLAG_CONTINUATION, continuation);
+        return protocol;
+    }
+
+    private static Protocol heartbeat() {
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_HEARTBEAT, Protocol.CONTENT_EMPTY);
+        return protocol;
+    }
+
+    @Test
+    void testOtherFramesPassDuringReassembly() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkAggregator(1024));
+        channel.writeInbound(chunk(1, "hello ", true));
+        channel.writeInbound(heartbeat());
+        // 不同 identityId 的普通消息（如 ACK）也直接放行
+        channel.writeInbound(chunk(2, "ack", false));
+        channel.writeInbound(chunk(1, "world", false));
+
+        assertThat(((Protocol) channel.readInbound()).getOrderType()).isEqualTo(Protocol.ORDER_HEARTBEAT);
+        assertThat(((Protocol) channel.readInbound()).getMessageString()).isEqualTo("ack");
+        assertThat(((Protocol) channel.readInbound()).getMessageString()).isEqualTo("hello world");
+        assertThat(channel.isOpen()).isTrue();
+    }
+
+    @Test
+    void testInterleavedChunkRejected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkAggregator(1024));
+        channel.writeInbound(chunk(1, "hello ", true));
+        channel.writeInbound(chunk(2, "other", true));
+        assertThat(channel.isOpen()).isFalse();
+    }
+}
@@ -0,0 +1,125 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 端口复用测试类：按首包识别原生TCP与WebSocket
+ */
+class PortUnificationHandlerTest {
+
+    private final NettyProperties properties = new NettyProperties();
+
+    private EmbeddedChannel channel() {
+        return new EmbeddedChannel(new PortUnificationHandler(properties, new ProtocolEncoder(properties)));
+    }
+
+    @Test
+    void testRawTcp() {
+        EmbeddedChannel channel = channel();
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_HEARTBEAT, Protocol.CONTENT_EMPTY);
+        ByteBuf buf = protocol.toBuffer(Unpooled.buffer());
+        // 只有1个字节时无法识别，继续等待
+        channel.writeInbound(buf.readRetainedSlice(1));
+        assertThat(channel.pipeline().get(PortUnificationHandler.class)).isNotNull();
+        channel.writeInbound(buf);
+
+        assertThat(channel.pipeline().get(PortUnificationHandler.class)).isNull();
+        assertThat(channel.pipeline().get(ProtocolFrameDecoder.class)).isNotNull();
+        Protocol decoded = channel.readInbound();
+        assertThat(decoded.getOrderType()).isEqualTo(Protocol.ORDER_HEARTBEAT);
+    }
+
+    @Test
+    void testWebSocket() {
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(Unpooled.copiedBuffer("GET /ws HTTP/1.1\r\n", StandardCharsets.US_ASCII));
+
+        assertThat(channel.pipeline().get(PortUnificationHandler.class)).isNull();
+        assertThat(channel.pipeline().get(HttpServerCodec.class)).isNotNull();
+        assertThat(channel.pipeline().get(WebSocketFrameCodec.class)).isNotNull();
+        assertThat(channel.isOpen()).isTrue();
+    }
+
+    /**
+     * 完整握手后，一个二进制帧解码为 Protocol，下行的 Protocol 编码为二进制帧
+     */
+    @Test
+    void testWebSocketRoundTrip() {
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(Unpooled.copiedBuffer("GET /ws HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n", StandardCharsets.US_ASCII));
+        assertThat(readOutboundText(channel)).startsWith("HTTP/1.1 101");
+
+        // 客户端发送的帧必须带掩码
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_HEARTBEAT, Protocol.CONTENT_EMPTY);
+        EmbeddedChannel client = new EmbeddedChannel(new WebSocket13FrameEncoder(true));
+        client.writeOutbound(new BinaryWebSocketFrame(protocol.toBuffer(Unpooled.buffer())));
+        ByteBuf frame;
+        while ((frame = client.readOutbound()) != null) {
+            channel.writeInbound(frame);
+        }
+        Protocol decoded = channel.readInbound();
+        assertThat(decoded.getOrderType()).isEqualTo(Protocol.ORDER_HEARTBEAT);
+
+        channel.writeOutbound(decoded);
+        EmbeddedChannel reply = new EmbeddedChannel(new WebSocket13FrameDecoder(false, true, 65536));
+        while ((frame = channel.readOutbound()) != null) {
+            reply.writeInbound(frame);
+        }
+        BinaryWebSocketFrame binary = reply.readInbound();
+        assertThat(binary).isNotNull();
+        EmbeddedChannel replyDecoder = new EmbeddedChannel(new ProtocolFrameDecoder(properties.getFrame()));
+        replyDecoder.writeInbound(binary.content());
+        Protocol replied = replyDecoder.readInbound();
+        assertThat(replied.getOrderType()).isEqualTo(Protocol.ORDER_HEARTBEAT);
+        assertThat(channel.isOpen()).isTrue();
+    }
+
+    /**
+     * 其他路径的 HTTP 请求返回 404 并关闭连接
+     */
+    @Test
+    void testHttpRejected() {
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(Unpooled.copiedBuffer("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n",
+                StandardCharsets.US_ASCII));
+        assertThat(readOutboundText(channel)).startsWith("HTTP/1.1 404");
+        assertThat(channel.isOpen()).isFalse();
+    }
+
+    private static String readOutboundText(EmbeddedChannel channel) {
+        StringBuilder text = new StringBuilder();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            text.append(buf.toString(StandardCharsets.US_ASCII));
+            buf.release();
+        }
+        return text.toString();
+    }
+
+    @Test
+    void testUnknownProtocol() {
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{0x16, 0x03, 0x01}));
+        assertThat(channel.isOpen()).isFalse();
+    }
+}
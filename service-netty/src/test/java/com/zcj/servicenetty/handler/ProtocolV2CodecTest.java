@@ -0,0 +1,136 @@
+package com.zcj.servicenetty.handler;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 协议 v2 测试类：编解码往返、帧头压缩效果、版本分发
+ */
+class ProtocolV2CodecTest {
+
+    private final NettyProperties properties = new NettyProperties();
+
+    private Protocol message(String content) {
+        Protocol protocol = new Protocol();
+        protocol.setType(Protocol.ORDER_MESSAGE, Protocol.CONTENT_TEXT);
+        protocol.setFromId(1_954_311_234_567_890_123L);
+        protocol.setSessionId(1_954_311_234_567_890_456L);
+        protocol.setMessageId(42);
+        protocol.setTimeStamp(1_760_000_000_000L);
+        protocol.setContent(content);
+        return protocol;
+    }
+
+    /**
+     * v2 编码后再解码，字段与内容一致（含时间戳增量与压缩）
+     */
+    @Test
+    void testRoundTrip() {
+        EmbeddedChannel server = new EmbeddedChannel(new ProtocolEncoder(properties));
+        server.attr(ProtocolV2Codec.VERSION_ATTR).set(ProtocolV2Codec.VERSION);
+        EmbeddedChannel client = new EmbeddedChannel(new ProtocolFrameDecoder(properties.getFrame()));
+
+        Protocol first = message("hello");
+        Protocol second = message("压缩".repeat(500));
+        second.setTimeStamp(first.getTimeStamp() + 15);
+        server.writeOutbound(first, second);
+
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf buf;
+        while ((buf = server.readOutbound()) != null) {
+            out.writeBytes(buf);
+            buf.release();
+        }
+        // 分两次写入，验证半包处理
+        client.writeInbound(out.readRetainedSlice(7));
+        client.writeInbound(out);
+
+        Protocol decoded1 = client.readInbound();
+        Protocol decoded2 = client.readInbound();
+        assertThat(decoded1.getFromId()).isEqualTo(first.getFromId());
+        assertThat(decoded1.getSessionId()).isEqualTo(first.getSessionId());
+        assertThat(decoded1.getMessageId()).isEqualTo(42);
+        assertThat(decoded1.getIdentityId()).isZero();
+        assertThat(decoded1.getTimeStamp()).isEqualTo(first.getTimeStamp());
+        assertThat(decoded1.getMessageString()).isEqualTo("hello");
+        assertThat(decoded2.getTimeStamp()).isEqualTo(second.getTimeStamp());
+        assertThat(decoded2.getMessageString()).isEqualTo(second.getMessageString());
+    }
+
+    /**
+     * 空消息体的 ACK：v2 帧远小于 v1 的固定帧头
+     */
+    @Test
+    void testAckHeaderSize() {
+        Protocol ack = new Protocol();
+        ack.setType(Protocol.ORDER_ACK, Protocol.CONTENT_TEXT);
+        ack.setSessionId(1_954_311_234_567_890_456L);
+        ack.setMessageId(42);
+        ack.setTimeStamp(1_760_000_000_000L);
+
+        EmbeddedChannel v2 = new EmbeddedChannel(new ProtocolEncoder(properties));
+        v2.attr(ProtocolV2Codec.VERSION_ATTR).set(ProtocolV2Codec.VERSION);
+        v2.writeOutbound(ack);
+        ByteBuf v2Frame = v2.readOutbound();
+
+        ByteBuf v1Frame = ack.toBuffer(Unpooled.buffer());
+        assertThat(v1Frame.readableBytes()).isEqualTo(Protocol.LengthFiledBias + 4);
+        assertThat(v2Frame.readableBytes()).isLessThan(v1Frame.readableBytes() / 2);
+        v1Frame.release();
+        v2Frame.release();
+    }
+
+    /**
+     * 同一个解码器同时接受 v1 帧（旧客户端）
+     */
+    @Test
+    void testV1Compatible() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolFrameDecoder(properties.getFrame()));
+        Protocol protocol = message("v1");
+        channel.writeInbound(protocol.toBuffer(Unpooled.buffer()));
+        Protocol decoded = channel.readInbound();
+        assertThat(decoded.getVersion()).isEqualTo((short) 1);
+        assertThat(decoded.getMessageString()).isEqualTo("v1");
+    }
+
+    /**
+     * 帧头中的变长整数超过5个字节时关闭连接，而不是把异常抛出解码器
+     */
+    @Test
+    void testCorruptedVarintRejected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolFrameDecoder(properties.getFrame()));
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeShort(Protocol.MAGIC_NUMBER);
+        buf.writeShort(ProtocolV2Codec.VERSION);
+        buf.writeBytes(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01});
+        channel.writeInbound(buf);
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(channel.isOpen()).isFalse();
+    }
+
+    /**
+     * 帧头很短时，消息体不能借用帧头的余量超出该指令的上限（心跳不允许携带消息体）
+     */
+    @Test
+    void testBodyOverOrderLimitRejected() {
+        NettyProperties.Frame frame = new NettyProperties.Frame();
+        frame.getOrderMaxFrameLength().put("heartbeat", 0);
+        Protocol heartbeat = new Protocol();
+        heartbeat.setType(Protocol.ORDER_HEARTBEAT, Protocol.HEARTBEAT_PING);
+        heartbeat.setContent("0123456789");
+
+        EmbeddedChannel server = new EmbeddedChannel(new ProtocolEncoder(properties));
+        server.attr(ProtocolV2Codec.VERSION_ATTR).set(ProtocolV2Codec.VERSION);
+        server.writeOutbound(heartbeat);
+        EmbeddedChannel channel = new EmbeddedChannel(new ProtocolFrameDecoder(frame));
+        channel.writeInbound((ByteBuf) server.readOutbound());
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(channel.isOpen()).isFalse();
+    }
+}
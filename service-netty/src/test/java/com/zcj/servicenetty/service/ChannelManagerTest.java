@@ -0,0 +1,79 @@
+package com.zcj.servicenetty.service;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChannelManager 测试类：多设备绑定、同设备替换、解绑顺序
+ */
+class ChannelManagerTest {
+
+    private PresenceService presenceService;
+    private ChannelManager channelManager;
+
+    @BeforeEach
+    void setUp() {
+        presenceService = mock(PresenceService.class);
+        channelManager = new ChannelManager(presenceService);
+    }
+
+    /**
+     * 不同设备同时在线，消息写到所有设备
+     */
+    @Test
+    void testMultiDeviceFanOut() {
+        EmbeddedChannel desktop = new EmbeddedChannel();
+        EmbeddedChannel phone = new EmbeddedChannel();
+        assertThat(channelManager.bind(1L, "Windows:aaa", desktop)).isNull();
+        assertThat(channelManager.bind(1L, "Android:bbb", phone)).isNull();
+        assertThat(channelManager.getDeviceCount(1L)).isEqualTo(2);
+
+        assertThat(channelManager.writeAndFlush(1L, "hello")).isEqualTo(2);
+        assertThat((String) desktop.readOutbound()).isEqualTo("hello");
+        assertThat((String) phone.readOutbound()).isEqualTo("hello");
+        verify(presenceService, times(1)).online(1L);
+    }
+
+    /**
+     * 同一设备重复登录替换旧连接，旧连接关闭时不影响新连接
+     */
+    @Test
+    void testSameDeviceReplacedAndStaleUnbindIgnored() {
+        EmbeddedChannel oldChannel = new EmbeddedChannel();
+        EmbeddedChannel newChannel = new EmbeddedChannel();
+        channelManager.bind(1L, "Android:bbb", oldChannel);
+        assertThat(channelManager.bind(1L, "Android:bbb", newChannel)).isSameAs(oldChannel);
+
+        // 旧连接随后触发 channelInactive
+        assertThat(channelManager.unbind(oldChannel)).isNull();
+        assertThat(channelManager.getChannel(1L)).isSameAs(newChannel);
+        verify(presenceService, never()).offline(1L);
+
+        assertThat(channelManager.unbind(newChannel)).isEqualTo(1L);
+        assertThat(channelManager.isOnline(1L)).isFalse();
+        verify(presenceService, times(1)).offline(1L);
+    }
+
+    /**
+     * 多设备逐个下线，最后一个设备下线时才离线
+     */
+    @Test
+    void testOfflineAfterLastDevice() {
+        EmbeddedChannel desktop = new EmbeddedChannel();
+        EmbeddedChannel phone = new EmbeddedChannel();
+        channelManager.bind(1L, "Windows:aaa", desktop);
+        channelManager.bind(1L, "Android:bbb", phone);
+
+        assertThat(channelManager.unbind(desktop)).isEqualTo(1L);
+        assertThat(channelManager.getChannel(1L)).isSameAs(phone);
+        verify(presenceService, never()).offline(1L);
+
+        assertThat(channelManager.unbind(phone)).isEqualTo(1L);
+        assertThat(channelManager.getDeviceCount(1L)).isZero();
+        verify(presenceService, times(1)).offline(1L);
+    }
+}
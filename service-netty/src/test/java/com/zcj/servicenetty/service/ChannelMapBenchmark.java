@@ -0,0 +1,131 @@
+package com.zcj.servicenetty.service;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConcurrentLongMap 与 ConcurrentHashMap&lt;Long, Channel&gt; 的对比基准
+ * <p>
+ * 运行：在 IDE 中直接执行 main，或 mvn test-compile 后以 test classpath 运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelMapBenchmark {
+
+    // 单节点连接规模
+    @Param({"200000"})
+    private int connections;
+
+    // 单次扇出的接收者数量（群成员数）
+    @Param({"500"})
+    private int fanOut;
+
+    private long[] userIds;
+    private long[] fanOutIds;
+    private Channel[] channels;
+
+    private ConcurrentHashMap<Long, Channel> boxedMap;
+    private ConcurrentLongMap<Channel> longMap;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // 共享少量 Channel 实例即可，基准只关心映射表本身
+        channels = new Channel[64];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new EmbeddedChannel();
+        }
+        userIds = new long[connections];
+        boxedMap = new ConcurrentHashMap<>();
+        longMap = new ConcurrentLongMap<>(256, connections);
+        for (int i = 0; i < connections; i++) {
+            // 模拟雪花ID
+            long id = (System.currentTimeMillis() - random.nextLong(1L << 30)) << 22 | random.nextInt(1 << 22);
+            userIds[i] = id;
+            Channel channel = channels[i & (channels.length - 1)];
+            boxedMap.put(id, channel);
+            longMap.put(id, channel);
+        }
+        fanOutIds = new long[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            fanOutIds[i] = userIds[random.nextInt(connections)];
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Channel channel : channels) {
+            channel.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Channel getBoxed() {
+        return boxedMap.get(userIds[ThreadLocalRandom.current().nextInt(connections)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Channel getLong() {
+        return longMap.get(userIds[ThreadLocalRandom.current().nextInt(connections)]);
+    }
+
+    @Benchmark
+    public void fanOutBoxed(Blackhole bh) {
+        Map<Long, Channel> map = boxedMap;
+        for (long id : fanOutIds) {
+            bh.consume(map.get(id));
+        }
+    }
+
+    @Benchmark
+    public void fanOutLong(Blackhole bh) {
+        Channel[] out = new Channel[fanOutIds.length];
+        longMap.getAll(fanOutIds, out);
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Channel bindUnbindBoxed() {
+        long id = userIds[ThreadLocalRandom.current().nextInt(connections)];
+        Channel channel = boxedMap.remove(id);
+        // 两个线程取到同一个ID时，后移除的一方拿到 null，不能放回
+        if (channel != null) boxedMap.put(id, channel);
+        return channel;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Channel bindUnbindLong() {
+        long id = userIds[ThreadLocalRandom.current().nextInt(connections)];
+        Channel channel = longMap.remove(id);
+        // 两个线程取到同一个ID时，后移除的一方拿到 null，不能放回
+        if (channel != null) longMap.put(id, channel);
+        return channel;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ChannelMapBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
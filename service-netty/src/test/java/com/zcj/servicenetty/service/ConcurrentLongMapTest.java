@@ -0,0 +1,105 @@
+package com.zcj.servicenetty.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ConcurrentLongMap 测试类：与 HashMap 对拍 + 多线程读写
+ */
+class ConcurrentLongMapTest {
+
+    /**
+     * 随机 put/remove，结果与 HashMap 保持一致（覆盖扩容和删除回填）
+     */
+    @Test
+    void testRandomOpsMatchHashMap() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>(4, 16);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // 键空间较小，制造大量冲突和重复键
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                String value = "v" + i;
+                assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = -100; key < 4_900; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        Map<Long, String> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertThat(iterated).isEqualTo(expected);
+    }
+
+    /**
+     * 条件删除：只有值为同一对象时才删除
+     */
+    @Test
+    void testConditionalRemove() {
+        ConcurrentLongMap<Object> map = new ConcurrentLongMap<>();
+        Object first = new Object();
+        Object second = new Object();
+        map.put(1L, first);
+        map.put(1L, second);
+        assertThat(map.remove(1L, first)).isFalse();
+        assertThat(map.get(1L)).isSameAs(second);
+        assertThat(map.remove(1L, second)).isTrue();
+        assertThat(map.containsKey(1L)).isFalse();
+    }
+
+    /**
+     * 多线程：各线程写入互不相交的键，读线程并发读取，最终数据完整
+     */
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(8, 16);
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicBoolean torn = new AtomicBoolean(false);
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * perThread;
+            executorService.submit(() -> {
+                for (long k = base; k < base + perThread; k++) {
+                    map.put(k, k);
+                }
+                for (long k = base; k < base + perThread; k += 2) {
+                    map.remove(k);
+                }
+                latch.countDown();
+            });
+        }
+        // 读线程：读到的值必须与键一致（不能读到撕裂的数据）
+        executorService.submit(() -> {
+            Random random = new Random();
+            while (latch.getCount() > 0) {
+                long key = random.nextInt(threads * perThread);
+                Long value = map.get(key);
+                if (value != null && value != key) torn.set(true);
+            }
+        });
+        assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+        executorService.shutdown();
+
+        assertThat(torn.get()).isFalse();
+        assertThat(map.size()).isEqualTo(threads * perThread / 2);
+        for (long k = 0; k < (long) threads * perThread; k++) {
+            assertThat(map.get(k)).isEqualTo(k % 2 == 0 ? null : k);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zcj.servicenetty.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zcj.servicenetty.handler.AuthHandler;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MessageRouterService 测试类：写入失败的用户不重放增量，而是按本地设备数覆盖；脚本丢失后重新加载
+ */
+class MessageRouterServiceTest {
+
+    private static final String ADDR = "10.0.0.1:8080";
+
+    private StringRedisTemplate redisTemplate;
+    private RedisScriptingCommands scriptingCommands;
+    private RedisHashCommands hashCommands;
+    private MessageRouterService messageRouterService;
+    // 每次管道执行的结果，依次使用
+    private final List<Object> pipelineOutcomes = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        AuthHandler.setLocalAddr(ADDR);
+        redisTemplate = mock(StringRedisTemplate.class);
+        scriptingCommands = mock(RedisScriptingCommands.class);
+        hashCommands = mock(RedisHashCommands.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            Object outcome = pipelineOutcomes.remove(0);
+            if (outcome instanceof RuntimeException e) throw e;
+            return outcome;
+        });
+        messageRouterService = new MessageRouterService(Caffeine.newBuilder().build(), redisTemplate,
+                mock(Encoder.class), mock(Decoder.class));
+    }
+
+    private static byte[] key(long userId) {
+        return MessageRouterService.routeKey(userId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testFailedResultRebuiltNotReplayed() {
+        messageRouterService.register(1L);
+        messageRouterService.register(2L);
+        messageRouterService.register(2L);
+        // 用户 1 写入成功，用户 2 因脚本丢失失败
+        pipelineOutcomes.add(new RedisPipelineException(new RuntimeException("pipeline"), List.of(1L,
+                new RedisSystemException("NOSCRIPT No matching script", null))));
+        messageRouterService.flushRoutes();
+        verify(scriptingCommands, times(1)).scriptLoad(any());
+        verify(scriptingCommands, times(2)).evalSha(any(byte[].class), eq(ReturnType.INTEGER), eq(1), any(byte[][].class));
+
+        // 下次写入前重新加载脚本，只覆盖用户 2 的设备数，用户 1 不再重复写入
+        pipelineOutcomes.add(List.of(true));
+        messageRouterService.flushRoutes();
+        verify(scriptingCommands, times(2)).scriptLoad(any());
+        verify(hashCommands).hSet(aryEq(key(2L)), aryEq(bytes(ADDR)), aryEq(bytes("2")));
+        verify(scriptingCommands, times(2)).evalSha(any(byte[].class), eq(ReturnType.INTEGER), eq(1), any(byte[][].class));
+    }
+
+    @Test
+    void testUnknownOutcomeRebuildsAll() {
+        messageRouterService.register(1L);
+        messageRouterService.register(2L);
+        pipelineOutcomes.add(new RedisSystemException("connection reset", null));
+        messageRouterService.flushRoutes();
+
+        // 期间用户 2 下线：用户 1 覆盖为 1，用户 2 的字段被删除
+        messageRouterService.unregister(2L);
+        pipelineOutcomes.add(List.of(true, 1L));
+        messageRouterService.flushRoutes();
+        verify(hashCommands).hSet(aryEq(key(1L)), aryEq(bytes(ADDR)), aryEq(bytes("1")));
+        verify(hashCommands).hDel(aryEq(key(2L)), aryEq(bytes(ADDR)));
+        verify(scriptingCommands, times(2)).evalSha(any(byte[].class), eq(ReturnType.INTEGER), eq(1), any(byte[][].class));
+        verify(scriptingCommands, times(1)).scriptLoad(any());
+    }
+}
@@ -0,0 +1,55 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.servicenetty.bootstrap.NettyServerBootstrap;
+import com.zcj.servicenetty.config.NettyProperties;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * NodeLoadService 测试类：事件循环被阻塞时上报的延迟不为 0
+ */
+class NodeLoadServiceTest {
+
+    @Test
+    void testBlockedEventLoopLag() throws Exception {
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        try {
+            NettyServerBootstrap serverBootstrap = mock(NettyServerBootstrap.class);
+            when(serverBootstrap.getWorkerGroup()).thenReturn(group);
+            NodeLoadService service = new NodeLoadService(mock(StringRedisTemplate.class),
+                    new ChannelManager(mock(PresenceService.class)), serverBootstrap,
+                    mock(MessageRouterService.class), new NettyProperties());
+
+            CountDownLatch release = new CountDownLatch(1);
+            group.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            // 第一次采样只提交探测
+            assertThat(service.sampleEventLoopLag()).isZero();
+            Thread.sleep(50);
+            // 探测仍在排队，上报其已等待的时间
+            assertThat(service.sampleEventLoopLag()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+
+            release.countDown();
+            group.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            // 探测执行后上报其实际延迟，随后的空闲轮次恢复为很小的值
+            assertThat(service.sampleEventLoopLag()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+            group.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            assertThat(service.sampleEventLoopLag()).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.entity.ChatMessage;
+import com.zcj.servicenetty.mapper.ChatMessageMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * SessionSummaryService 测试类：同一会话的多条消息合并为一次写入，只保留最新一条
+ */
+class SessionSummaryServiceTest {
+
+    private static ChatMessage message(long sessionId, long messageId, int type, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSessionId(sessionId);
+        message.setMessageId(messageId);
+        message.setType(type);
+        message.setContent(content);
+        message.setStatus(ChatMessage.STATUS_SUCCESS);
+        message.setCreatedAt(messageId * 1000);
+        return message;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLatestMessagePerSession() {
+        ChatMessageMapper mapper = mock(ChatMessageMapper.class);
+        SessionSummaryService service = new SessionSummaryService(mapper);
+
+        service.record(List.of(
+                message(1, 1, ChatMessage.TYPE_TEXT, "a"),
+                message(1, 3, ChatMessage.TYPE_TEXT, "x".repeat(300)),
+                message(2, 5, ChatMessage.TYPE_IMAGE, "img.png")));
+        // 乱序到达的旧消息不覆盖新消息
+        service.record(List.of(message(1, 2, ChatMessage.TYPE_TEXT, "b")));
+        service.flush();
+
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(1)).updateLastMessage(captor.capture(), anyLong());
+        List<ChatMessage> summaries = captor.getValue().stream()
+                .sorted(Comparator.comparing(ChatMessage::getSessionId)).toList();
+        assertThat(summaries).hasSize(2);
+        assertThat(summaries.get(0).getMessageId()).isEqualTo(3);
+        assertThat(summaries.get(0).getContent()).hasSize(100);
+        assertThat(summaries.get(1).getContent()).isEqualTo("[图片]");
+
+        // 已写入的摘要不再重复写
+        service.flush();
+        verifyNoMoreInteractions(mapper);
+    }
+
+    /**
+     * 撤回最新一条消息后，摘要替换为撤回占位文本
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecallLatestMessage() {
+        ChatMessageMapper mapper = mock(ChatMessageMapper.class);
+        SessionSummaryService service = new SessionSummaryService(mapper);
+
+        service.record(List.of(message(1, 3, ChatMessage.TYPE_TEXT, "hello")));
+        service.flush();
+        ChatMessage recalled = message(1, 3, ChatMessage.TYPE_TEXT, "hello");
+        recalled.setStatus(ChatMessage.STATUS_DRAWBACK);
+        service.record(List.of(recalled));
+        service.flush();
+
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).updateLastMessage(captor.capture(), anyLong());
+        ChatMessage summary = captor.getAllValues().get(1).get(0);
+        assertThat(summary.getMessageId()).isEqualTo(3);
+        assertThat(summary.getContent()).isEqualTo("[消息已撤回]");
+
+        // 同一批次内先发送后撤回，只写入撤回后的摘要
+        service.record(List.of(message(1, 4, ChatMessage.TYPE_TEXT, "again")));
+        ChatMessage recalledAgain = message(1, 4, ChatMessage.TYPE_TEXT, "again");
+        recalledAgain.setStatus(ChatMessage.STATUS_DRAWBACK);
+        service.record(List.of(recalledAgain));
+        service.flush();
+        verify(mapper, times(3)).updateLastMessage(captor.capture(), anyLong());
+        assertThat(captor.getValue().get(0).getContent()).isEqualTo("[消息已撤回]");
+    }
+}
@@ -0,0 +1,100 @@
+package com.zcj.servicenetty.service;
+
+import com.zcj.common.entity.Protocol;
+import com.zcj.servicenetty.config.NettyProperties;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * SyncPushService 测试类：同一用户的同步信号在窗口期内合并，到期后每张表只推送一次
+ */
+class SyncPushServiceTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private NettyProperties nettyProperties;
+    private SyncPushService syncPushService;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        ChannelManager channelManager = new ChannelManager(mock(PresenceService.class));
+        channel = new EmbeddedChannel();
+        channelManager.bind(1L, "Android:aaa", channel);
+        nettyProperties = new NettyProperties();
+        syncPushService = new SyncPushService(channelManager, nettyProperties, now::get);
+    }
+
+    private void receive(String body) {
+        syncPushService.onMessage(new DefaultMessage("netty:sync".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private List<String> outboundTables() {
+        List<String> tables = new ArrayList<>();
+        Protocol protocol;
+        while ((protocol = channel.readOutbound()) != null) {
+            tables.add(new String(protocol.getContent(), StandardCharsets.UTF_8));
+        }
+        return tables;
+    }
+
+    /**
+     * 批量操作产生的多次信号合并为每张表一帧，不在本节点的用户被忽略
+     */
+    @Test
+    void testBurstCoalesced() {
+        nettyProperties.getSync().setDebounceMillis(50);
+        for (int i = 0; i < 30; i++) {
+            receive("chat_group,group_member|1,2");
+        }
+        receive("chat_session|1");
+
+        now.addAndGet(49);
+        syncPushService.flush();
+        assertThat(outboundTables()).isEmpty();
+
+        now.addAndGet(1);
+        syncPushService.flush();
+        assertThat(outboundTables()).containsExactly("chat_session", "chat_group", "group_member");
+    }
+
+    /**
+     * 持续有信号时，超过最大延迟也会发送
+     */
+    @Test
+    void testMaxDelayFlushes() {
+        nettyProperties.getSync().setDebounceMillis(10_000);
+        nettyProperties.getSync().setMaxDelayMillis(30);
+        // 每 10ms 一个信号，窗口期始终不结束
+        for (int i = 0; i < 2; i++) {
+            receive("user_friend|1");
+            now.addAndGet(10);
+            syncPushService.flush();
+            assertThat(outboundTables()).isEmpty();
+        }
+        receive("user_friend|1");
+        now.addAndGet(10);
+        syncPushService.flush();
+        assertThat(outboundTables()).containsExactly("user_friend");
+    }
+
+    /**
+     * 关闭合并时立即推送
+     */
+    @Test
+    void testDebounceDisabled() {
+        nettyProperties.getSync().setDebounceMillis(0);
+        receive("friend_request|1");
+        assertThat(outboundTables()).containsExactly("friend_request");
+    }
+}
@@ -71,4 +71,15 @@ public class FriendController {
         return Result.success(result);
     }
 
+    /**
+     * 查询在线的好友ID
+     */
+    @GetMapping("/online")
+    public Result<List<String>> onlineFriends() {
+        // ID以字符串返回，避免前端精度丢失
+        List<String> result = friendService.onlineFriends().stream()
+                .map(String::valueOf)
+                .toList();
+        return Result.success(result);
+    }
 }
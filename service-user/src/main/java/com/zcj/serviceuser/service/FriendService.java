@@ -19,4 +19,6 @@ public interface FriendService {
     UserFriend updateRemark(UserFriend userFriend);
 
     List<UserFriend> updateDeleteStatus(UserFriend userFriend);
+
+    List<Long> onlineFriends();
 }
@@ -4,18 +4,18 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.zcj.common.context.UserContext;
 import com.zcj.common.entity.FriendRequest;
 import com.zcj.common.entity.UserFriend;
-import com.zcj.common.feign.NettyFeignClient;
 import com.zcj.common.feign.ChatServiceFeignClient;
+import com.zcj.common.feign.PresenceFeignClient;
+import com.zcj.common.vo.Result;
 import com.zcj.serviceuser.mapper.FriendRequireMapper;
 import com.zcj.serviceuser.mapper.UserFriendMapper;
 import com.zcj.serviceuser.service.FriendService;
 import com.zcj.common.utils.SnowflakeIdGenerator;
+import com.zcj.common.utils.SyncNotifier;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.support.TransactionSynchronization;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,8 +28,9 @@ public class FriendServiceImpl implements FriendService {
     final private FriendRequireMapper friendRequireMapper;
     final private UserFriendMapper userFriendMapper;
     final private SnowflakeIdGenerator idGenerator;
-    final private NettyFeignClient nettyFeignClient;
+    final private SyncNotifier syncNotifier;
     final private ChatServiceFeignClient chatServiceFeignClient;
+    final private PresenceFeignClient presenceFeignClient;
 
     @Override
     @Transactional
@@ -39,7 +40,7 @@ public class FriendServiceImpl implements FriendService {
         request.setCreatedAt(System.currentTimeMillis());
         request.setUpdatedAt(System.currentTimeMillis());
         friendRequireMapper.insert(request);
-        nettyFeignClient.sync(request.getToId(), "friend_request");
+        syncNotifier.notify(request.getToId(), SyncNotifier.FRIEND_REQUEST);
         return request;
     }
 
@@ -118,21 +119,13 @@ public class FriendServiceImpl implements FriendService {
         request.setUpdatedAt(System.currentTimeMillis());
         friendRequireMapper.updateById(request);
 
-        // 注册事务同步器：在事务提交后执行同步逻辑
-        boolean finalNeedSyncUserFriend = needSyncUserFriend;
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                // 事务提交后执行同步操作
-                if (finalNeedSyncUserFriend) {
-                    // 发送好友列表同步信号
-                    nettyFeignClient.sync(fromId, "user_friend");
-                    nettyFeignClient.sync(toId, "user_friend");
-                }
-                // 发送好友请求状态同步信号（无论是否通过，状态变更都需要同步）
-                nettyFeignClient.sync(fromId, "friend_request");
-            }
-        });
+        // 同步信号在事务提交后发送
+        if (needSyncUserFriend) {
+            // 发送好友列表同步信号
+            syncNotifier.notify(List.of(fromId, toId), SyncNotifier.USER_FRIEND);
+        }
+        // 发送好友请求状态同步信号（无论是否通过，状态变更都需要同步）
+        syncNotifier.notify(fromId, SyncNotifier.FRIEND_REQUEST);
 
         return request;
     }
@@ -247,13 +240,7 @@ public class FriendServiceImpl implements FriendService {
         result.add(selfItem);
         result.add(otherItem);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                // 事务提交后执行同步操作
-                nettyFeignClient.sync(userFriend.getFriendId(), "user_friend");
-            }
-        });
+        syncNotifier.notify(userFriend.getFriendId(), SyncNotifier.USER_FRIEND);
 
         return result;
     }
@@ -331,14 +318,30 @@ public class FriendServiceImpl implements FriendService {
         result.add(selfItem);
         result.add(otherItem);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
-            @Override
-            public void afterCommit() {
-                // 发送好友列表同步信号
-                nettyFeignClient.sync(userFriend.getFriendId(), "user_friend");
-            }
-        });
+        // 发送好友列表同步信号
+        syncNotifier.notify(userFriend.getFriendId(), SyncNotifier.USER_FRIEND);
 
         return result;
     }
+
+    @Override
+    public List<Long> onlineFriends() {
+        Long id = UserContext.getId();
+        LambdaQueryWrapper<UserFriend> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(UserFriend::getFriendId);
+        queryWrapper.eq(UserFriend::getUserId, id);
+        queryWrapper.eq(UserFriend::getDeleteStatus, UserFriend.DELETE_NO);
+        List<Long> friendIds = userFriendMapper.selectList(queryWrapper).stream()
+                .map(UserFriend::getFriendId)
+                .toList();
+        if (friendIds.isEmpty()) {
+            return friendIds;
+        }
+        // 在线状态由Netty节点在内存中批量判断
+        Result<List<Long>> result = presenceFeignClient.filterOnline(friendIds);
+        if (result == null || !Result.SUCCESS.equals(result.getCode())) {
+            throw new RuntimeException("在线状态查询失败");
+        }
+        return result.getData();
+    }
 }
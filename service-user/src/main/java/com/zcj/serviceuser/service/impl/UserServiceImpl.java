@@ -14,6 +14,7 @@ import com.zcj.serviceuser.mapper.UserLoginMapper;
 import com.zcj.serviceuser.mapper.UserMapper;
 import com.zcj.serviceuser.service.UserService;
 import com.zcj.common.utils.JWTUtil;
+import com.zcj.common.utils.ResponseCacheInvalidator;
 import com.zcj.common.utils.SnowflakeIdGenerator;
 import com.zcj.common.vo.Result;
 import com.zcj.common.vo.UserProfileVO;
@@ -43,6 +44,7 @@ public class UserServiceImpl implements UserService {
     final private UserLoginMapper userLoginMapper;
     final private ObjectMapper objectMapper;
     final private FileServiceFeignClient fileServiceFeignClient;
+    final private ResponseCacheInvalidator responseCacheInvalidator;
 
     private static final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
 
@@ -80,6 +82,13 @@ public class UserServiceImpl implements UserService {
         // 生成JWT
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
+        // 设备信息，Netty长连接据此区分同一用户的多个设备
+        if (loginDTO.getPlatform() != null) {
+            claims.put("platform", loginDTO.getPlatform());
+        }
+        if (loginDTO.getDeviceHash() != null) {
+            claims.put("deviceHash", loginDTO.getDeviceHash());
+        }
         String jwt = jwtUtil.create(claims);
 
         userLogin.setStatus(UserLogin.TYPE_SUCCESS);
@@ -182,6 +191,7 @@ public class UserServiceImpl implements UserService {
     public Result<Void> updateUser(User user) {
         user.setUpdatedAt(System.currentTimeMillis());
         userMapper.updateById(user);
+        responseCacheInvalidator.invalidateUser(user.getId());
         return Result.success();
     }
 
@@ -234,6 +244,7 @@ public class UserServiceImpl implements UserService {
         User user = userMapper.selectById(id);
         user.setStatus(User.STATUS_DELETED);
         userMapper.updateById(user);
+        responseCacheInvalidator.invalidateUser(id);
         return Result.success();
     }
 